@@ -0,0 +1,75 @@
+package magick4j;
+
+/**
+ * One text label for DrawInfo.annotate: the text, the box it goes in and,
+ * optionally, its own gravity. A null gravity means the DrawInfo gravity.
+ */
+public class Annotation {
+    private Gravity gravity;
+    private double height;
+    private String text;
+    private double width;
+    private double x;
+    private double y;
+
+    public Annotation(double width, double height, double x, double y, String text) {
+        this(width, height, x, y, null, text);
+    }
+
+    public Annotation(double width, double height, double x, double y, Gravity gravity, String text) {
+        this.width = width;
+        this.height = height;
+        this.x = x;
+        this.y = y;
+        this.gravity = gravity;
+        this.text = text;
+    }
+
+    public Gravity getGravity() {
+        return gravity;
+    }
+
+    public double getHeight() {
+        return height;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public double getWidth() {
+        return width;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public void setGravity(Gravity gravity) {
+        this.gravity = gravity;
+    }
+
+    public void setHeight(double height) {
+        this.height = height;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    public void setWidth(double width) {
+        this.width = width;
+    }
+
+    public void setX(double x) {
+        this.x = x;
+    }
+
+    public void setY(double y) {
+        this.y = y;
+    }
+}
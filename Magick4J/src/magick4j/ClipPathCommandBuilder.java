@@ -52,6 +52,11 @@ public class ClipPathCommandBuilder extends CommandBuilder{
         return nil();
     }
 
+    @Override
+    public Command pushGradient(String name, Gradient gradient) {
+        return nil();
+    }
+
     @Override
     public Command pushPattern(Pattern pattern) {
         //TODO Test if it works for the clip-path too or if its ignored.
@@ -60,11 +65,10 @@ public class ClipPathCommandBuilder extends CommandBuilder{
 
     @Override
     public Command shape(final Shape s) {
-        return new Command(){
-            public void perform(DrawContext context){
-                path.append(s, false);
-            }
-        };
+        // The clip path doesn't depend on the drawing state, so build it now.
+        // That keeps the commands reusable when the program is drawn again.
+        path.append(s, false);
+        return nil();
     }
 
     @Override
@@ -122,4 +126,9 @@ public class ClipPathCommandBuilder extends CommandBuilder{
         //TODO Test if it works for the clip-path too or if its ignored.
         return nil();
     }
+
+    @Override
+    public Command text(double x, double y, String text) {
+        return nil();
+    }
 }
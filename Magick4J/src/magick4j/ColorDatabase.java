@@ -11,6 +11,12 @@ public class ColorDatabase {
 
     private static final Map<String, PixelPacket> NAMED_COLORS = buildNamedColors();
 
+    private static final PixelPacket TRANSPARENT = new PixelPacket(0, 0, 0, 255).freeze();
+
+    private static final Map<Integer, String> NAMES = buildNames();
+
+    private static final LruCache<String, PixelPacket> PARSED = new LruCache<String, PixelPacket>(1024);
+
     private static Map<String, PixelPacket> buildNamedColors() {
         // TODO Maybe read from a properties file instead.
         Map<String, PixelPacket> colors = new HashMap<String, PixelPacket>();
@@ -101,11 +107,11 @@ public class ColorDatabase {
         colors.put("darkgrey", new PixelPacket(169,169,169));
         colors.put("darkkhaki", new PixelPacket(189,183,107));
         colors.put("darkmagenta", new PixelPacket(139,0,139));
-        colors.put("darkoliveGreen", new PixelPacket(85,107,47));
-        colors.put("darkoliveGreen1", new PixelPacket(202,255,112));
-        colors.put("darkoliveGreen2", new PixelPacket(188,238,104));
-        colors.put("darkoliveGreen3", new PixelPacket(162,205,90));
-        colors.put("darkoliveGreen4", new PixelPacket(110,139,61));
+        colors.put("darkolivegreen", new PixelPacket(85,107,47));
+        colors.put("darkolivegreen1", new PixelPacket(202,255,112));
+        colors.put("darkolivegreen2", new PixelPacket(188,238,104));
+        colors.put("darkolivegreen3", new PixelPacket(162,205,90));
+        colors.put("darkolivegreen4", new PixelPacket(110,139,61));
         colors.put("darkorange", new PixelPacket(255,140,0));
         colors.put("darkorange1", new PixelPacket(255,127,0));
         colors.put("darkorange2", new PixelPacket(238,118,0));
@@ -394,7 +400,7 @@ public class ColorDatabase {
         colors.put("hotpink2", new PixelPacket(238,106,167));
         colors.put("hotpink3", new PixelPacket(205,96,144));
         colors.put("hotpink4", new PixelPacket(139,58,98));
-        colors.put("indianRed", new PixelPacket(205,92,92));
+        colors.put("indianred", new PixelPacket(205,92,92));
         colors.put("indianred1", new PixelPacket(255,106,106));
         colors.put("indianred2", new PixelPacket(238,99,99));
         colors.put("indianred3", new PixelPacket(205,85,85));
@@ -555,11 +561,11 @@ public class ColorDatabase {
         colors.put("paleturquoise2", new PixelPacket(174,238,238));
         colors.put("paleturquoise3", new PixelPacket(150,205,205));
         colors.put("paleturquoise4", new PixelPacket(102,139,139));
-        colors.put("palevioletRed", new PixelPacket(219,112,147));
-        colors.put("palevioletRed1", new PixelPacket(255,130,171));
-        colors.put("palevioletRed2", new PixelPacket(238,121,159));
-        colors.put("palevioletRed3", new PixelPacket(205,104,137));
-        colors.put("palevioletRed4", new PixelPacket(139,71,93));
+        colors.put("palevioletred", new PixelPacket(219,112,147));
+        colors.put("palevioletred1", new PixelPacket(255,130,171));
+        colors.put("palevioletred2", new PixelPacket(238,121,159));
+        colors.put("palevioletred3", new PixelPacket(205,104,137));
+        colors.put("palevioletred4", new PixelPacket(139,71,93));
         colors.put("papayawhip", new PixelPacket(255,239,213));
         colors.put("peachpuff", new PixelPacket(255,218,185));
         colors.put("peachpuff1", new PixelPacket(255,218,185));
@@ -694,61 +700,162 @@ public class ColorDatabase {
         colors.put("yellow3", new PixelPacket(205,205,0));
         colors.put("yellow4", new PixelPacket(139,139,0));
         colors.put("yellowgreen", new PixelPacket(154,205,50));
+        for (PixelPacket color : colors.values()) {
+            color.freeze();
+        }
         return colors;
     }
 
-    static String getName(PixelPacket pixel) {
-        if(NAMED_COLORS.containsValue(pixel)){
-            for(String key : NAMED_COLORS.keySet()){
-                if(NAMED_COLORS.get(key).equals(pixel))
-                    return key;
+    /**
+     * Indexes the names by the packed color they look up. Of the names of one
+     * color, the shortest wins, and among those the first in alphabetical
+     * order, so "azure" beats "azure1" and "aqua" beats "cyan".
+     */
+    private static Map<Integer, String> buildNames() {
+        Map<Integer, String> names = new HashMap<Integer, String>();
+        for (String candidate : NAMED_COLORS.keySet()) {
+            Integer key = lookUp(candidate).getValue().getArgb();
+            String name = names.get(key);
+            if (name == null || candidate.length() < name.length() || (candidate.length() == name.length() && candidate.compareTo(name) < 0)) {
+                names.put(key, candidate);
             }
         }
-        return null;
+        return names;
+    }
+
+    static String getName(PixelPacket pixel) {
+        return NAMES.get(pixel.getValue().getArgb());
     }
     
+    /**
+     * Resolves a color name, "#rgb", "#rgba", "#rrggbb", "#rrggbbaa",
+     * "rgb(r, g, b)", "rgba(r, g, b, a)", "hsl(h, s, l)" or "hsla(h, s, l, a)",
+     * or returns null. Red, green and blue go from 0 to 255 or are percentages,
+     * hue is in degrees, saturation and lightness are percentages with or
+     * without the sign, and alpha goes from 0 to 1 or is a percentage. Results
+     * are kept by name, and shared, so they can't be changed. Malformed
+     * numbers, as in "#zz0000" or "rgb(a, b, c)", also give null.
+     */
     public static PixelPacket queryDefault(String colorName) {
-        return new ColorDatabase().query(colorName);
+        PixelPacket color = PARSED.get(colorName);
+        if (color == null) {
+            try {
+                color = parse(colorName);
+            } catch (NumberFormatException e) {
+                // Callers, Ruby's included, take null as an unknown color.
+                color = null;
+            }
+            if (color != null) {
+                color.freeze();
+                PARSED.put(colorName, color);
+            }
+        }
+        return color;
     }
 
+    /**
+     * Returns the named color, or null. Named colors are shared, so they can't
+     * be changed.
+     */
     public static PixelPacket lookUp(String colorName) {
-        // TODO Make PixelPacket cloneable and store PixelPackets in NAMED_COLORS instead of Strings?
-        // TODO Should "#rrggbb" also support alpha at the end?
-        if (colorName.equals("transparent") || colorName.equals("none")) {
-            return new PixelPacket(0, 0, 0, 255);
+        String name = colorName.toLowerCase();
+        if (name.equals("transparent") || name.equals("none")) {
+            return TRANSPARENT;
         }
-        String oldName = colorName;
-        PixelPacket color = NAMED_COLORS.get(colorName.toLowerCase());
-        if (color == null) {
-            System.err.println("not found: " + oldName);
+        return NAMED_COLORS.get(name);
+    }
+
+    private static int clamp(double value) {
+        return (int) Math.max(0, Math.min(255, Math.round(value)));
+    }
+
+    /**
+     * Returns the value scaled to the range if it ends in '%', or as it is.
+     */
+    private static double component(String value, double range) {
+        if (value.endsWith("%")) {
+            return Double.parseDouble(value.substring(0, value.length() - 1)) * range / 100;
         }
-        return colorName == null ? null : color;
+        return Double.parseDouble(value);
     }
 
-    private PixelPacket parseRgb(String rgb) {
-        // TODO Fix it
-        if (rgb.length() == 6) {
-            // If NumberFormatException, that's okay. Crazy input.
-            // Just need to be able to say this in Ruby:
-            // ArgumentError: invalid color name: #eerr00
+    private static int hueChannel(double p, double q, double t) {
+        if (t < 0) {
+            t += 1;
+        } else if (t > 1) {
+            t -= 1;
+        }
+        double value;
+        if (t < 1 / 6.0) {
+            value = p + (q - p) * 6 * t;
+        } else if (t < 0.5) {
+            value = q;
+        } else if (t < 2 / 3.0) {
+            value = p + (q - p) * (2 / 3.0 - t) * 6;
+        } else {
+            value = p;
+        }
+        return clamp(value * 255);
+    }
+
+    private static PixelPacket parse(String colorName) {
+        if (colorName.startsWith("#")) {
+            return parseHex(colorName.substring(1));
+        }
+        int open = colorName.indexOf('(');
+        if (open < 0) {
+            return lookUp(colorName);
+        }
+        if (!colorName.endsWith(")")) {
+            return null;
+        }
+        String function = colorName.substring(0, open).trim().toLowerCase();
+        String[] arguments = colorName.substring(open + 1, colorName.length() - 1).trim().split("\\s*,\\s*|\\s+");
+        if (arguments.length < 3 || arguments.length > 4) {
+            return null;
+        }
+        int opacity = arguments.length == 4 ? 255 - clamp(255 * component(arguments[3], 1)) : 0;
+        if (function.equals("rgb") || function.equals("rgba")) {
+            return new PixelPacket(clamp(component(arguments[0], 255)), clamp(component(arguments[1], 255)), clamp(component(arguments[2], 255)), opacity);
+        }
+        if (function.equals("hsl") || function.equals("hsla")) {
+            double hue = Double.parseDouble(arguments[0]) % 360 / 360;
+            if (hue < 0) {
+                hue += 1;
+            }
+            double saturation = Math.max(0, Math.min(1, Double.parseDouble(arguments[1].replace("%", "")) / 100));
+            double lightness = Math.max(0, Math.min(1, Double.parseDouble(arguments[2].replace("%", "")) / 100));
+            double q = lightness < 0.5 ? lightness * (1 + saturation) : lightness + saturation - lightness * saturation;
+            double p = 2 * lightness - q;
+            return new PixelPacket(hueChannel(p, q, hue + 1 / 3.0), hueChannel(p, q, hue), hueChannel(p, q, hue - 1 / 3.0), opacity);
+        }
+        return null;
+    }
+
+    private static PixelPacket parseHex(String rgb) {
+        for (int i = 0; i < rgb.length(); i++) {
+            // parseInt would take signs too.
+            if (Character.digit(rgb.charAt(i), 16) < 0) {
+                return null;
+            }
+        }
+        if (rgb.length() == 6 || rgb.length() == 8) {
             int red = Integer.parseInt(rgb.substring(0, 2), 16);
             int green = Integer.parseInt(rgb.substring(2, 4), 16);
             int blue = Integer.parseInt(rgb.substring(4, 6), 16);
-            return new PixelPacket(red, green, blue);
-        } else if(rgb.length() == 3){
+            int alpha = rgb.length() == 8 ? Integer.parseInt(rgb.substring(6, 8), 16) : 255;
+            return new PixelPacket(red, green, blue, 255 - alpha);
+        } else if (rgb.length() == 3 || rgb.length() == 4) {
             int red = Integer.parseInt(rgb.substring(0, 1)+rgb.substring(0, 1), 16);
             int green = Integer.parseInt(rgb.substring(1, 2)+rgb.substring(1, 2), 16);
             int blue = Integer.parseInt(rgb.substring(2, 3)+rgb.substring(2, 3), 16);
-            return new PixelPacket(red, green, blue);
+            int alpha = rgb.length() == 4 ? Integer.parseInt(rgb.substring(3, 4)+rgb.substring(3, 4), 16) : 255;
+            return new PixelPacket(red, green, blue, 255 - alpha);
         }
         return null;
     }
 
     public PixelPacket query(String colorName) {
-        if (colorName.startsWith("#")) {
-            return parseRgb(colorName.substring(1));
-        } else {
-            return lookUp(colorName);
-        }
+        return queryDefault(colorName);
     }
 }
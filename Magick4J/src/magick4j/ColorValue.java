@@ -0,0 +1,98 @@
+package magick4j;
+
+import java.awt.Color;
+
+/**
+ * An immutable color, packed in one ARGB int. Unlike PixelPacket, the alpha
+ * is java.awt.Color's, 255 being opaque. The Color is made the first time it
+ * is asked for and then kept, so values can be shared between threads and
+ * drawn with as often as needed.
+ */
+public final class ColorValue {
+
+    /**
+     * Returns the color of the channels, each taken modulo 256 like the
+     * setters of PixelPacket do.
+     */
+    public static ColorValue valueOf(int red, int green, int blue, int opacity) {
+        return new ColorValue((255 - wrap(opacity)) << 24 | wrap(red) << 16 | wrap(green) << 8 | wrap(blue));
+    }
+
+    private static int wrap(int channel) {
+        // Java takes -56%256 as -56, not 200.
+        channel %= 256;
+        return channel < 0 ? channel + 256 : channel;
+    }
+
+    private final int argb;
+    private volatile Color color;
+
+    public ColorValue(int argb) {
+        this.argb = argb;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ColorValue && ((ColorValue) o).argb == argb;
+    }
+
+    public int getAlpha() {
+        return argb >>> 24;
+    }
+
+    public int getArgb() {
+        return argb;
+    }
+
+    public int getBlue() {
+        return argb & 0xFF;
+    }
+
+    public int getGreen() {
+        return argb >> 8 & 0xFF;
+    }
+
+    public int getOpacity() {
+        return 255 - getAlpha();
+    }
+
+    public int getRed() {
+        return argb >> 16 & 0xFF;
+    }
+
+    @Override
+    public int hashCode() {
+        return argb;
+    }
+
+    public Color toColor() {
+        Color result = color;
+        if (result == null) {
+            // Two threads may both make one, which is harmless.
+            result = new Color(argb, true);
+            color = result;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("#%08x", argb);
+    }
+
+    public ColorValue withBlue(int blue) {
+        return valueOf(getRed(), getGreen(), blue, getOpacity());
+    }
+
+    public ColorValue withGreen(int green) {
+        return valueOf(getRed(), green, getBlue(), getOpacity());
+    }
+
+    public ColorValue withOpacity(int opacity) {
+        return valueOf(getRed(), getGreen(), getBlue(), opacity);
+    }
+
+    public ColorValue withRed(int red) {
+        return valueOf(red, getGreen(), getBlue(), getOpacity());
+    }
+}
@@ -5,11 +5,8 @@ import java.awt.geom.Arc2D;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.GeneralPath;
 import java.awt.geom.Line2D;
-import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.geom.RoundRectangle2D;
-import java.io.BufferedReader;
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -18,167 +15,166 @@ import java.util.Map;
 
 /**
  * See http://studio.imagemagick.org/script/magick-vector-graphics.php for specs.
+ * 
+ * The parsers in the table are stateless. Anything that changes while a script
+ * is parsed lives in the CommandParser instance created for that script, so
+ * several threads can parse at the same time.
  */
 public class CommandParser {
     
     private static final Map<String, ParserBuilder> PARSERS = buildBuilders();
-    private static CommandBuilder currentBuilder = new StandardCommandBuilder();
 
     private static Map<String, ParserBuilder> buildBuilders() {
         Map<String, ParserBuilder> builders = new HashMap<String, ParserBuilder>();
         
         builders.put("affine", new ParserBuilder(){
-            public Command build( String... parts){
-                String[] args = parts[1].split(",");
-                double sx = Double.parseDouble(args[0]);
-                double rx = Double.parseDouble(args[1]);
-                double ry = Double.parseDouble(args[2]);
-                double sy = Double.parseDouble(args[3]);
-                double tx = Double.parseDouble(args[4]);
-                double ty = Double.parseDouble(args[5]);
-                return CommandParser.getCurrentBuilder().affine(sx, rx, ry, sy, tx, ty);
+            public Command build(CommandParser parser, MvgTokenizer tokens){
+                double sx = tokens.nextDouble();
+                double rx = tokens.nextDouble();
+                double ry = tokens.nextDouble();
+                double sy = tokens.nextDouble();
+                double tx = tokens.nextDouble();
+                double ty = tokens.nextDouble();
+                return parser.getCurrentBuilder().affine(sx, rx, ry, sy, tx, ty);
             }
         });
         
         builders.put("arc", new ParserBuilder(){
-            public Command build(String... parts){
-                String[] originPoint = parts[1].split(",");
-                String[] endPoint = parts[2].split(",");
-                String[] degrees = parts[3].split(",");
+            public Command build(CommandParser parser, MvgTokenizer tokens){
+                double originX = tokens.nextDouble();
+                double originY = tokens.nextDouble();
+                double endX = tokens.nextDouble();
+                double endY = tokens.nextDouble();
+                double arcStart = tokens.nextDouble();
+                double arcStop = tokens.nextDouble();
                 
-                Point2D origin = new Point2D.Double(Double.parseDouble(originPoint[0]),Double.parseDouble(originPoint[1]));
-                Point2D end = new Point2D.Double(Double.parseDouble(endPoint[0]),Double.parseDouble(endPoint[1]));
-                double arcStart = Double.parseDouble(degrees[0]);
-                double arcStop = Double.parseDouble(degrees[1]);
-                
-                return CommandParser.getCurrentBuilder().shape(new Arc2D.Double(origin.getX(), origin.getY(), end.getX()-origin.getX(), end.getY()-origin.getY(), -arcStart, -(arcStop - arcStart), Arc2D.OPEN));
+                return parser.getCurrentBuilder().shape(new Arc2D.Double(originX, originY, endX-originX, endY-originY, -arcStart, -(arcStop - arcStart), Arc2D.OPEN));
             }
         });
         
         builders.put("bezier", new ParserBuilder(){
-           public Command build(String... parts){
+           public Command build(CommandParser parser, MvgTokenizer tokens){
                List<Command> commands = new ArrayList<Command>();
                // TODO Study how bezier command work depending on the ammount
                // of points.
-               return CommandParser.getCurrentBuilder().compose(commands);
+               while(tokens.hasNumber()){
+                   tokens.nextDouble();
+               }
+               return parser.getCurrentBuilder().compose(commands);
            } 
         });
         
         builders.put("circle", new ParserBuilder() {
-            public Command build(String... parts) {
-                String[] args0 = parts[1].split(",");
-                String[] args1 = parts[2].split(",");
-                double centerX = Double.parseDouble(args0[0]);
-                double centerY = Double.parseDouble(args0[1]);
-                double perimeterX = Double.parseDouble(args1[0]);
-                double perimeterY = Double.parseDouble(args1[1]);
+            public Command build(CommandParser parser, MvgTokenizer tokens) {
+                double centerX = tokens.nextDouble();
+                double centerY = tokens.nextDouble();
+                double perimeterX = tokens.nextDouble();
+                double perimeterY = tokens.nextDouble();
                 double dX = perimeterX - centerX;
                 double dY = perimeterY - centerY;
                 double radius = Math.sqrt(dX * dX + dY * dY);
-                return CommandParser.getCurrentBuilder().shape(new Ellipse2D.Double(centerX - radius, centerY - radius, 2 * radius, 2 * radius));
+                return parser.getCurrentBuilder().shape(new Ellipse2D.Double(centerX - radius, centerY - radius, 2 * radius, 2 * radius));
             }
         });
         
         builders.put("clip-path", new ParserBuilder(){
-            public Command build(String... parts){
-                return CommandParser.getCurrentBuilder().prepareClipPath(parts[1]);
+            public Command build(CommandParser parser, MvgTokenizer tokens){
+                return parser.getCurrentBuilder().prepareClipPath(tokens.nextString());
             }
         });
         
         builders.put("ellipse", new ParserBuilder() {
-            public Command build(String... parts) {
-                String[] args0 = parts[1].split(",");
-                String[] args1 = parts[2].split(",");
-                String[] args2 = parts[3].split(",");
-                double centerX = Double.parseDouble(args0[0]);
-                double centerY = Double.parseDouble(args0[1]);
-                double radiusX = Double.parseDouble(args1[0]);
-                double radiusY = Double.parseDouble(args1[1]);
-                double arcStart = Double.parseDouble(args2[0]);
-                double arcStop = Double.parseDouble(args2[1]);
+            public Command build(CommandParser parser, MvgTokenizer tokens) {
+                double centerX = tokens.nextDouble();
+                double centerY = tokens.nextDouble();
+                double radiusX = tokens.nextDouble();
+                double radiusY = tokens.nextDouble();
+                double arcStart = tokens.nextDouble();
+                double arcStop = tokens.nextDouble();
                 // TODO Custom primitive class to support OPEN strokes and PIE fills?
-                return CommandParser.getCurrentBuilder().shape(new Arc2D.Double(centerX - radiusX, centerY - radiusY, 2 * radiusX, 2 * radiusY, -arcStart, -(arcStop - arcStart), Arc2D.OPEN));
+                return parser.getCurrentBuilder().shape(new Arc2D.Double(centerX - radiusX, centerY - radiusY, 2 * radiusX, 2 * radiusY, -arcStart, -(arcStop - arcStart), Arc2D.OPEN));
             }
         });
         
         builders.put("fill", new ParserBuilder() {
-            public Command build(String... parts) {
-                String colorName = parts[1].replace("\"", "");
-                return CommandParser.getCurrentBuilder().fill(colorName);
+            public Command build(CommandParser parser, MvgTokenizer tokens) {
+                return parser.getCurrentBuilder().fill(tokens.nextString());
             }
         });
         
         builders.put("fill-opacity", new ParserBuilder() {
-            public Command build(String... parts) {
-                double opacity = Double.parseDouble(parts[1]);
-                return CommandParser.getCurrentBuilder().fillOpacity(opacity);
+            public Command build(CommandParser parser, MvgTokenizer tokens) {
+                return parser.getCurrentBuilder().fillOpacity(nextOpacity(tokens));
             }
         });
         
         builders.put("fill-rule", new ParserBuilder() {
-           public Command build(String... parts) {
-               if(parts[1].equals("nonzero"))
-                   return CommandParser.getCurrentBuilder().fillRule(GeneralPath.WIND_NON_ZERO);
+           public Command build(CommandParser parser, MvgTokenizer tokens) {
+               if(tokens.nextString().equals("nonzero"))
+                   return parser.getCurrentBuilder().fillRule(GeneralPath.WIND_NON_ZERO);
                else
-                   return CommandParser.getCurrentBuilder().fillRule(GeneralPath.WIND_EVEN_ODD);
+                   return parser.getCurrentBuilder().fillRule(GeneralPath.WIND_EVEN_ODD);
            } 
         });
         
         builders.put("line", new ParserBuilder() {
-            public Command build(String... parts) {
-                String[] args0 = parts[1].split(",");
-                String[] args1 = parts[2].split(",");
-                double x1 = Double.parseDouble(args0[0]);
-                double y1 = Double.parseDouble(args0[1]);
-                double x2 = Double.parseDouble(args1[0]);
-                double y2 = Double.parseDouble(args1[1]);
+            public Command build(CommandParser parser, MvgTokenizer tokens) {
+                double x1 = tokens.nextDouble();
+                double y1 = tokens.nextDouble();
+                double x2 = tokens.nextDouble();
+                double y2 = tokens.nextDouble();
                 // TODO Custom primitive to avoid fills?
-                return CommandParser.getCurrentBuilder().shape(new Line2D.Double(x1, y1, x2, y2));
+                return parser.getCurrentBuilder().shape(new Line2D.Double(x1, y1, x2, y2));
             }
         });
         
-        builders.put("path", new PathParser());
+        builders.put("path", new ParserBuilder() {
+            public Command build(CommandParser parser, MvgTokenizer tokens) {
+                // The path parser keeps state while it works, so never share one.
+                return new PathParser().build(parser, tokens);
+            }
+        });
         
         builders.put("polygon", new ParserBuilder() {
-            public Command build(String... parts) {
-                GeneralPath path = buildPolyline(parts);
+            public Command build(CommandParser parser, MvgTokenizer tokens) {
+                GeneralPath path = buildPolyline(tokens);
                 path.closePath();
-                return CommandParser.getCurrentBuilder().shape(path);
+                return parser.getCurrentBuilder().shape(path);
             }
         });
         
         builders.put("polyline", new ParserBuilder() {
-            public Command build(String... parts) {
-                GeneralPath path = buildPolyline(parts);
-                return CommandParser.getCurrentBuilder().shape(path);
+            public Command build(CommandParser parser, MvgTokenizer tokens) {
+                GeneralPath path = buildPolyline(tokens);
+                return parser.getCurrentBuilder().shape(path);
             }
         });
         
         builders.put("pop", new ParserBuilder() {
-            public Command build(String... parts) {
-                String type = parts[1];
+            public Command build(CommandParser parser, MvgTokenizer tokens) {
+                String type = tokens.nextString();
                 
                 if(type.equals("clip-path")){
-                    Command c = ((ClipPathCommandBuilder) CommandParser.getCurrentBuilder()).drawClipPath();
-                    CommandParser.setCurrentBuilder(new StandardCommandBuilder());
+                    Command c = ((ClipPathCommandBuilder) parser.getCurrentBuilder()).drawClipPath();
+                    parser.setCurrentBuilder(new StandardCommandBuilder());
                     return c;
                 }
                 
                 if(type.equals("defs")){
-                    return CommandParser.getCurrentBuilder().nil(); // Yep, it does nothing.
+                    return parser.getCurrentBuilder().nil(); // Yep, it does nothing.
                 }
               
                 if(type.equals("gradient")){
-                    // TODO: Implement.
-                    throw new RuntimeException("unknown pop type: gradient");
+                    parser.setGradient(null);
+                    return parser.getCurrentBuilder().nil();
                 }
               
                 if(type.equals("graphic-context")) {
-                    return CommandParser.getCurrentBuilder().pop();
+                    return parser.getCurrentBuilder().pop();
                 }
                 
                 if(type.equals("pattern")){
-                    return CommandParser.getCurrentBuilder().nil();
+                    return parser.getCurrentBuilder().nil();
                 }
                 
                 throw new RuntimeException("unknown pop type: " + type);
@@ -186,37 +182,58 @@ public class CommandParser {
         });
         
         builders.put("push", new ParserBuilder() {
-            public Command build(String... parts) {
-                String type = parts[1];
+            public Command build(CommandParser parser, MvgTokenizer tokens) {
+                String type = tokens.nextString();
                 
                 if(type.equals("clip-path")){
-                    Command c = CommandParser.getCurrentBuilder().pushClipPath(parts[2]);
-                    CommandParser.setCurrentBuilder(new ClipPathCommandBuilder());
+                    Command c = parser.getCurrentBuilder().pushClipPath(tokens.nextString());
+                    parser.setCurrentBuilder(new ClipPathCommandBuilder());
                     return c;
                 }
                 
                 if(type.equals("defs")){
-                    return CommandParser.getCurrentBuilder().nil(); // Yep, it does nothing.
+                    return parser.getCurrentBuilder().nil(); // Yep, it does nothing.
                 }
               
                 if(type.equals("gradient")){
-                    // TODO: Implement.
-                    throw new RuntimeException("unknown push type: gradient");
+                    String name = tokens.nextString();
+                    String kind = tokens.nextString();
+                    Gradient gradient;
+                    if(kind.equals("linear")){
+                        double x1 = tokens.nextDouble();
+                        double y1 = tokens.nextDouble();
+                        double x2 = tokens.nextDouble();
+                        double y2 = tokens.nextDouble();
+                        gradient = Gradient.linear(x1, y1, x2, y2);
+                    } else if(kind.equals("radial")){
+                        // A focus off the center makes it conical.
+                        double centerX = tokens.nextDouble();
+                        double centerY = tokens.nextDouble();
+                        double focusX = tokens.nextDouble();
+                        double focusY = tokens.nextDouble();
+                        double radius = tokens.nextDouble();
+                        gradient = Gradient.conical(centerX, centerY, focusX, focusY, radius);
+                    } else {
+                        throw new RuntimeException("unknown gradient type: " + kind);
+                    }
+                    // The stops that follow are part of the definition.
+                    parser.setGradient(gradient);
+                    return parser.getCurrentBuilder().pushGradient(name, gradient);
                 }
               
                 if(type.equals("graphic-context")) {
-                    return CommandParser.getCurrentBuilder().push();
+                    return parser.getCurrentBuilder().push();
                 }
                 
                 if(type.equals("pattern")){
-                    String name = parts[2];
-                    int x = Integer.parseInt(parts[3]);
-                    int y = Integer.parseInt(parts[4]);
-                    int width = Integer.parseInt(parts[5]);
-                    int height = Integer.parseInt(parts[6]);
+                    String name = tokens.nextString();
+                    int x = tokens.nextInt();
+                    int y = tokens.nextInt();
+                    int width = tokens.nextInt();
+                    int height = tokens.nextInt();
                     
                     Pattern pattern = new Pattern(name, x, y, width, height);
-                    return CommandParser.getCurrentBuilder().pushPattern(pattern);
+                    return parser.getCurrentBuilder().pushPattern(pattern);
                 }
                 
                 throw new RuntimeException("unknown push type: " + type);
@@ -224,156 +241,178 @@ public class CommandParser {
         });
         
         builders.put("rectangle", new ParserBuilder() {
-            public Command build(String... parts) {
-                String[] args0 = parts[1].split(",");
-                String[] args1 = parts[2].split(",");
-                double x1 = Double.parseDouble(args0[0]);
-                double y1 = Double.parseDouble(args0[1]);
-                double x2 = Double.parseDouble(args1[0]);
-                double y2 = Double.parseDouble(args1[1]);
-                return CommandParser.getCurrentBuilder().shape(new Rectangle2D.Double(Math.min(x1, x2), Math.min(y1, y2), Math.abs(x2 - x1), Math.abs(y2 - y1)));
+            public Command build(CommandParser parser, MvgTokenizer tokens) {
+                double x1 = tokens.nextDouble();
+                double y1 = tokens.nextDouble();
+                double x2 = tokens.nextDouble();
+                double y2 = tokens.nextDouble();
+                return parser.getCurrentBuilder().shape(new Rectangle2D.Double(Math.min(x1, x2), Math.min(y1, y2), Math.abs(x2 - x1), Math.abs(y2 - y1)));
             }
         });
         
         builders.put("rotate", new ParserBuilder() {
-            public Command build(String... parts) {
-                return CommandParser.getCurrentBuilder().rotate(Double.parseDouble(parts[1]));
+            public Command build(CommandParser parser, MvgTokenizer tokens) {
+                return parser.getCurrentBuilder().rotate(tokens.nextDouble());
             }
         });
         
         builders.put("roundrectangle", new ParserBuilder() {
-            public Command build(String... parts) {
-                String[] args = parts[1].split(",");
-                double x1 = Double.parseDouble(args[0]);
-                double y1 = Double.parseDouble(args[1]);
-                double x2 = Double.parseDouble(args[2]);
-                double y2 = Double.parseDouble(args[3]);
-                double cornerWidth = Double.parseDouble(args[4]);
-                double cornerHeight = Double.parseDouble(args[5]);
-                return CommandParser.getCurrentBuilder().shape(new RoundRectangle2D.Double(x1, y1, x2 - x1, y2 - y1, cornerWidth, cornerHeight));
+            public Command build(CommandParser parser, MvgTokenizer tokens) {
+                double x1 = tokens.nextDouble();
+                double y1 = tokens.nextDouble();
+                double x2 = tokens.nextDouble();
+                double y2 = tokens.nextDouble();
+                double cornerWidth = tokens.nextDouble();
+                double cornerHeight = tokens.nextDouble();
+                return parser.getCurrentBuilder().shape(new RoundRectangle2D.Double(x1, y1, x2 - x1, y2 - y1, cornerWidth, cornerHeight));
             }
         });
         
         builders.put("scale", new ParserBuilder() {
-            public Command build(String... parts) {
-                String[] args = parts[1].split(",");
-                return CommandParser.getCurrentBuilder().scale(Double.parseDouble(args[0]), Double.parseDouble(args[1]));
+            public Command build(CommandParser parser, MvgTokenizer tokens) {
+                double scaleX = tokens.nextDouble();
+                double scaleY = tokens.nextDouble();
+                return parser.getCurrentBuilder().scale(scaleX, scaleY);
             }
         });
         
         builders.put("skewX", new ParserBuilder() {
-           public Command build(String... parts) {
-               return CommandParser.getCurrentBuilder().skewX(Double.parseDouble(parts[1]));
+           public Command build(CommandParser parser, MvgTokenizer tokens) {
+               return parser.getCurrentBuilder().skewX(tokens.nextDouble());
            } 
         });
         
         builders.put("skewY", new ParserBuilder() {
-            public Command build(String... parts) {
-                return CommandParser.getCurrentBuilder().skewY(Double.parseDouble(parts[1]));
+            public Command build(CommandParser parser, MvgTokenizer tokens) {
+                return parser.getCurrentBuilder().skewY(tokens.nextDouble());
             }
         });
         
+        builders.put("stop-color", new ParserBuilder() {
+            public Command build(CommandParser parser, MvgTokenizer tokens) {
+                if (parser.getGradient() == null) {
+                    throw new RuntimeException("stop-color outside of a gradient");
+                }
+                String name = tokens.nextString();
+                PixelPacket color = ColorDatabase.queryDefault(name);
+                if (color == null) {
+                    throw new RuntimeException("unknown color: " + name);
+                }
+                parser.getGradient().addStop(nextOpacity(tokens), color);
+                return parser.getCurrentBuilder().nil();
+            }
+        });
+
         builders.put("stroke", new ParserBuilder() {
-            public Command build(String... parts) {
-                String colorName = parts[1].replace("\"", "");
-                
-                return CommandParser.getCurrentBuilder().stroke(colorName);
+            public Command build(CommandParser parser, MvgTokenizer tokens) {
+                return parser.getCurrentBuilder().stroke(tokens.nextString());
             }
         });
         
         builders.put("stroke-antialias", new ParserBuilder() {
-            public Command build(String... parts) {
-                return CommandParser.getCurrentBuilder().strokeAntialias(Integer.parseInt(parts[1]) == 1);
+            public Command build(CommandParser parser, MvgTokenizer tokens) {
+                return parser.getCurrentBuilder().strokeAntialias(tokens.nextInt() == 1);
             }
         });
         
         builders.put("stroke-dasharray", new ParserBuilder() {
-            public Command build(String... parts) {
-                String[] args = parts[1].split(",");
-                double[] lengths = new double[args.length];
-                for (int a = 0; a < args.length; a++) {
-                    lengths[a] = Double.parseDouble(args[a]);
+            public Command build(CommandParser parser, MvgTokenizer tokens) {
+                if(!tokens.hasNumber()){
+                    tokens.nextString(); // "none"
+                    return parser.getCurrentBuilder().strokeDashArray((double[]) null);
+                }
+                double[] lengths = new double[4];
+                int count = 0;
+                while(tokens.hasNumber()){
+                    if(count == lengths.length){
+                        double[] grown = new double[2 * count];
+                        System.arraycopy(lengths, 0, grown, 0, count);
+                        lengths = grown;
+                    }
+                    lengths[count++] = tokens.nextDouble();
                 }
-                return CommandParser.getCurrentBuilder().strokeDashArray(lengths);
+                double[] result = new double[count];
+                System.arraycopy(lengths, 0, result, 0, count);
+                return parser.getCurrentBuilder().strokeDashArray(result);
             }
         });
         
         builders.put("stroke-linecap", new ParserBuilder(){
-           public Command build(String... parts){
+           public Command build(CommandParser parser, MvgTokenizer tokens){
+               String type = tokens.nextString();
                int linecap=0;
-               if("butt".equals(parts[1]))
+               if("butt".equals(type))
                    linecap = BasicStroke.CAP_BUTT;
-               else if("round".equals(parts[1]))
+               else if("round".equals(type))
                    linecap = BasicStroke.CAP_ROUND;
-               else //if("square".equals(parts[1]))
+               else //if("square".equals(type))
                    linecap = BasicStroke.CAP_SQUARE;
                
-               return CommandParser.getCurrentBuilder().strokeLinecap(linecap);
+               return parser.getCurrentBuilder().strokeLinecap(linecap);
            } 
         });
         
         builders.put("stroke-linejoin", new ParserBuilder() {
-           public Command build(String... parts) {
+           public Command build(CommandParser parser, MvgTokenizer tokens) {
+               String type = tokens.nextString();
                int linejoin = 0;
-               if("miter".equals(parts[1]))
+               if("miter".equals(type))
                    linejoin = BasicStroke.JOIN_MITER;
-               else if("round".equals(parts[1]))
+               else if("round".equals(type))
                    linejoin = BasicStroke.JOIN_ROUND;
-               else //if("bevel".equals(parts[1]))
+               else //if("bevel".equals(type))
                    linejoin = BasicStroke.JOIN_BEVEL;
                
-               return CommandParser.getCurrentBuilder().strokeLinejoin(linejoin);
+               return parser.getCurrentBuilder().strokeLinejoin(linejoin);
            } 
         });
         
         builders.put("stroke-miterlimit", new ParserBuilder() {
-           public Command build(String... parts) {
-               return CommandParser.getCurrentBuilder().strokeMiterLimit(Float.parseFloat(parts[1]));
+           public Command build(CommandParser parser, MvgTokenizer tokens) {
+               return parser.getCurrentBuilder().strokeMiterLimit(tokens.nextFloat());
            }; 
         });
         
         builders.put("stroke-opacity", new ParserBuilder() {
-            public Command build(String... parts) {
-                // Manage two different type of string:
-                // 1.- "0.3"
-                // 2.- "30%"
-                String opacity = parts[1];
-                double value = 0.0;
-                char[] string = opacity.toCharArray();
-                if(string[string.length-1] == '%'){
-                    opacity = opacity.substring(0, string.length-1);
-                    value = Double.parseDouble(opacity)/100.0;
-                }else{
-                    value = Double.parseDouble(opacity);
-                }
-                return CommandParser.getCurrentBuilder().strokeOpacity(value);
+            public Command build(CommandParser parser, MvgTokenizer tokens) {
+                return parser.getCurrentBuilder().strokeOpacity(nextOpacity(tokens));
             }
         });
         
         builders.put("stroke-width", new ParserBuilder() {
-            public Command build(String... parts) {
-                return CommandParser.getCurrentBuilder().strokeWidth(Double.parseDouble(parts[1]));
+            public Command build(CommandParser parser, MvgTokenizer tokens) {
+                return parser.getCurrentBuilder().strokeWidth(tokens.nextDouble());
+            }
+        });
+        
+        builders.put("text", new ParserBuilder() {
+            public Command build(CommandParser parser, MvgTokenizer tokens) {
+                double x = tokens.nextDouble();
+                double y = tokens.nextDouble();
+                return parser.getCurrentBuilder().text(x, y, tokens.nextString());
             }
         });
         
         builders.put("translate", new ParserBuilder() {
-           public Command build(String... parts) {
-               String[] point = parts[1].split(",");
-               return CommandParser.getCurrentBuilder().translate(Double.parseDouble(point[0]), Double.parseDouble(point[1]));
+           public Command build(CommandParser parser, MvgTokenizer tokens) {
+               double x = tokens.nextDouble();
+               double y = tokens.nextDouble();
+               return parser.getCurrentBuilder().translate(x, y);
            } 
         });
         
         return builders;
     }
 
-    private static GeneralPath buildPolyline(String parts[]) {
+    private static GeneralPath buildPolyline(MvgTokenizer tokens) {
         GeneralPath path = new GeneralPath();
-        String[] args = parts[1].split(",");
-        for (int a = 0; a < args.length; a += 2) {
-            double x = Double.parseDouble(args[a]);
-            double y = Double.parseDouble(args[a + 1]);
-            if (a == 0) {
+        boolean first = true;
+        while (tokens.hasNumber()) {
+            double x = tokens.nextDouble();
+            double y = tokens.nextDouble();
+            if (first) {
                 path.moveTo((float) x, (float) y);
+                first = false;
             } else {
                 path.lineTo((float) x, (float) y);
             }
@@ -381,32 +420,40 @@ public class CommandParser {
         return path;
     }
     
-    public static CommandBuilder getCurrentBuilder(){
-        if(currentBuilder == null){
-            System.out.println("CurrentBuilder es null *******************************************");
+    /**
+     * Manages two different type of string:
+     * 1.- "0.3"
+     * 2.- "30%"
+     */
+    private static double nextOpacity(MvgTokenizer tokens) {
+        double value = tokens.nextDouble();
+        if (tokens.consume('%')) {
+            value /= 100.0;
         }
-        return currentBuilder;
+        return value;
     }
 
     public static List<Command> parse(String script) {
-        try {
-            List<Command> commands = new ArrayList<Command>();
-            BufferedReader reader = new BufferedReader(new StringReader(script));
-            // TODO MVG specs say this isn't really line based. They could all be on one line.
-            String line;
-            while ((line = reader.readLine()) != null){
-                commands.add(parseCommand(line));
-            }
-            // Officially no need to close StringReaders.
-            return commands;
-        } catch (Exception e) {
-            throw Thrower.throwAny(e);
-        }
+        return new CommandParser().parseScript(script);
+    }
+
+    private CommandBuilder currentBuilder = new StandardCommandBuilder();
+    /** The gradient being defined, if any. */
+    private Gradient gradient;
+
+    private CommandParser() {
+    }
+
+    public CommandBuilder getCurrentBuilder(){
+        return currentBuilder;
+    }
+
+    private Gradient getGradient() {
+        return gradient;
     }
 
-    private static Command parseCommand(String text) {
-        String[] parts = text.split(" +");
-        String command = parts[0];
+    private Command parseCommand(MvgTokenizer tokens) {
+        String command = tokens.nextString();
         ParserBuilder builder = PARSERS.get(command);
         if (builder == null) {
             // TODO This should also be the error for bad params (at least when I tested roundrectangle with only 2)
@@ -416,10 +463,27 @@ public class CommandParser {
             // TODO Also, this text might ought to be in the Ruby side, not in the Java side.
             throw new RuntimeException("Non-conforming drawing primitive definition `" + command + "'");
         }
-        return builder.build(parts);
+        return builder.build(this, tokens);
+    }
+
+    private List<Command> parseScript(CharSequence script) {
+        List<Command> commands = new ArrayList<Command>();
+        MvgTokenizer tokens = new MvgTokenizer(script);
+        while (tokens.hasNext()) {
+            if (tokens.peek() == '#') {
+                tokens.skipLine();
+            } else {
+                commands.add(parseCommand(tokens));
+            }
+        }
+        return commands;
     }
 
-    private static void setCurrentBuilder(CommandBuilder commandBuilder) {
+    private void setCurrentBuilder(CommandBuilder commandBuilder) {
         currentBuilder = commandBuilder;
     }
+
+    private void setGradient(Gradient gradient) {
+        this.gradient = gradient;
+    }
 }
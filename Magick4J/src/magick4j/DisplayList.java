@@ -0,0 +1,249 @@
+package magick4j;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What a draw comes down to: every shape in device space with the fill and
+ * stroke it was drawn with, and every text run with its font, the state
+ * commands already applied. Replaying it at a scale factor draws what the
+ * program would after a scale command, without parsing or performing any
+ * command, so one recording serves the 1x, 2x and print renderings alike.
+ *
+ * Only command lists that change state, push and pop graphic contexts, and
+ * draw shapes and text can be recorded. A draw gives each graphic context a
+ * layer of its own, while a replay draws everything in place, so translucent
+ * edges may round a level differently. Display lists are immutable.
+ */
+public final class DisplayList {
+
+    /**
+     * Something recorded, which draws itself scaled.
+     */
+    private static abstract class Item {
+        /**
+         * Draws the item with everything scaled, unless it lies outside the
+         * image. Returns whether it was drawn.
+         */
+        public abstract boolean replay(Graphics2D graphics, MagickImage image, AffineTransform transform, double scale);
+    }
+
+    private static final class ShapeItem extends Item {
+        private final boolean antialias;
+        private final Rectangle2D bounds;
+        private final Color fill;
+        private final Gradient fillGradient;
+        private final double fillOpacity;
+        private final boolean line;
+        private final double reach;
+        private final Shape shape;
+        private final Color stroke;
+        private final Gradient strokeGradient;
+        private final BasicStroke strokeStyle;
+        private final double strokeWidth;
+        private final double tolerance;
+        private final AffineTransform transform;
+
+        public ShapeItem(ShapeCommand command, DrawInfo info) {
+            this.shape = info.getSpaceTransformation().createTransformedShape(command.getShape(info.getFillRule()));
+            this.bounds = shape.getBounds2D();
+            this.line = command.isLine();
+            this.antialias = info.isStrokeAntialias();
+            this.fill = info.getFill().toColor();
+            this.fillGradient = info.getFillGradient();
+            this.fillOpacity = info.getFillOpacity();
+            this.stroke = info.getStroke().toColor();
+            this.strokeGradient = info.getStrokeGradient();
+            this.strokeStyle = info.getBasicStroke(ShapeCommand.deviceStrokeWidth(info));
+            // Gradients are painted through the transformation, scale included.
+            this.transform = new AffineTransform(info.getSpaceTransformation());
+            this.strokeWidth = Math.max(transform.getScaleX() * info.getStrokeWidth(), transform.getScaleY() * info.getStrokeWidth());
+            this.reach = ShapeCommand.deviceStrokeReach(info);
+            // Only paths are simplified, after scaling, as a draw would.
+            this.tolerance = command.getShape(info.getFillRule()) instanceof GeneralPath ? info.getPathTolerance() : 0;
+        }
+
+        @Override
+        public boolean replay(Graphics2D graphics, MagickImage image, AffineTransform transform, double scale) {
+            double pad = 1 + reach * scale;
+            if (bounds.getMaxX() * scale + pad < 0 || bounds.getMinX() * scale - pad > image.getWidth()
+                    || bounds.getMaxY() * scale + pad < 0 || bounds.getMinY() * scale - pad > image.getHeight()) {
+                return false;
+            }
+            Shape scaled = scale == 1 ? shape : transform.createTransformedShape(shape);
+            if (tolerance > 0) {
+                scaled = PathSimplifier.simplify(scaled, tolerance);
+            }
+            BasicStroke scaledStyle = strokeStyle;
+            if (scale != 1) {
+                // Like a draw, scale the width but not the dashes.
+                scaledStyle = new BasicStroke((float) (strokeWidth * scale), strokeStyle.getEndCap(), strokeStyle.getLineJoin(),
+                        strokeStyle.getMiterLimit(), strokeStyle.getDashArray(), strokeStyle.getDashPhase());
+            }
+            Paint fillPaint = fill, strokePaint = stroke;
+            if (fillGradient != null || strokeGradient != null) {
+                AffineTransform paintTransform = new AffineTransform(transform);
+                paintTransform.concatenate(this.transform);
+                fillPaint = fillGradient == null ? fill : fillGradient.getPaint(paintTransform);
+                strokePaint = strokeGradient == null ? stroke : strokeGradient.getPaint(paintTransform);
+            }
+
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antialias ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+            graphics.setStroke(scaledStyle);
+            if (line) {
+                draw(graphics, fillPaint, scaled);
+            } else if (fillOpacity > 0.0 && !ShapeCommand.isTransparent(fillPaint)) {
+                graphics.setComposite(fillOpacity < 1.0 ? AlphaComposite.getInstance(AlphaComposite.SRC_OVER, (float) fillOpacity) : AlphaComposite.SrcOver);
+                graphics.setPaint(fillPaint);
+                graphics.fill(scaled);
+                graphics.setComposite(AlphaComposite.SrcOver);
+            }
+            draw(graphics, strokePaint, scaled);
+            return true;
+        }
+    }
+
+    private static final class TextItem extends Item {
+        private final DrawInfo info;
+        private final String text;
+        private final double x;
+        private final double y;
+
+        public TextItem(TextCommand command, DrawInfo info) {
+            this.info = info.clone();
+            this.text = command.getText();
+            this.x = command.getX();
+            this.y = command.getY();
+        }
+
+        @Override
+        public boolean replay(Graphics2D graphics, MagickImage image, AffineTransform transform, double scale) {
+            // Glyphs are laid out through the transformation, so keep it whole.
+            Graphics2D text = (Graphics2D) graphics.create();
+            try {
+                text.transform(transform);
+                text.transform(info.getSpaceTransformation());
+                TextCommand.draw(text, info, this.text, x, y);
+            } finally {
+                text.dispose();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Tells whether the commands can be recorded when drawn with the
+     * DrawInfo.
+     */
+    public static boolean canRecord(DrawInfo info, List<Command> commands) {
+        if (info.getFillPattern() != null || info.getStrokePattern() != null) {
+            return false;
+        }
+        for (Command command : commands) {
+            if (!(command instanceof StateCommand || command instanceof ShapeCommand || command instanceof TextCommand
+                    || command instanceof GraphicContextCommand)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Performs the state commands on a copy of the DrawInfo and records each
+     * shape and text run the way it would be drawn at that point.
+     */
+    public static DisplayList record(DrawInfo info, List<Command> commands) {
+        if (!canRecord(info, commands)) {
+            throw new RuntimeException("only state changes, graphic contexts, shapes and text can be recorded");
+        }
+        DrawContext context = new DrawContext(info.clone(), null);
+        List<Item> items = new ArrayList<Item>();
+        int shapes = 0;
+        try {
+            for (Command command : commands) {
+                if (command instanceof ShapeCommand) {
+                    DrawInfo current = context.getInfo();
+                    if (current.getFillPattern() != null || current.getStrokePattern() != null) {
+                        throw new RuntimeException("patterns can't be recorded");
+                    }
+                    items.add(new ShapeItem((ShapeCommand) command, current));
+                    shapes++;
+                } else if (command instanceof TextCommand) {
+                    items.add(new TextItem((TextCommand) command, context.getInfo()));
+                } else if (command instanceof GraphicContextCommand) {
+                    if (((GraphicContextCommand) command).isPush()) {
+                        context.pushInfo();
+                    } else {
+                        context.popInfo();
+                    }
+                } else {
+                    command.perform(context);
+                }
+            }
+        } finally {
+            context.dispose();
+        }
+        return new DisplayList(info.clone(), items, shapes);
+    }
+
+    private final DrawInfo info;
+    private final List<Item> items;
+    private final int shapes;
+
+    private DisplayList(DrawInfo info, List<Item> items, int shapes) {
+        this.info = info;
+        this.items = items;
+        this.shapes = shapes;
+    }
+
+    /**
+     * Tells whether the list is what recording with the DrawInfo would give.
+     */
+    boolean isRecordedWith(DrawInfo other) {
+        return info.hasSameState(other);
+    }
+
+    /**
+     * Draws the recorded shapes and text onto the image with everything
+     * scaled by the factor. Shapes that end up outside the image are skipped.
+     */
+    public DrawStatistics replay(MagickImage image, double scale) {
+        AffineTransform transform = AffineTransform.getScaleInstance(scale, scale);
+        int culled = 0;
+        Graphics2D graphics = image.getImage().createGraphics();
+        try {
+            for (Item item : items) {
+                if (!item.replay(graphics, image, transform, scale)) {
+                    culled++;
+                }
+            }
+        } finally {
+            graphics.dispose();
+        }
+        return new DrawStatistics(items.size(), shapes, culled);
+    }
+
+    private static void draw(Graphics2D graphics, Paint paint, Shape shape) {
+        if (!ShapeCommand.isTransparent(paint)) {
+            graphics.setPaint(paint);
+            graphics.draw(shape);
+        }
+    }
+
+    /**
+     * Returns the number of recorded shapes and text runs.
+     */
+    public int size() {
+        return items.size();
+    }
+}
@@ -1,6 +1,7 @@
 package magick4j;
 
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.List;
@@ -9,9 +10,11 @@ import java.util.logging.Logger;
 
 public class DrawContext {
     private String applyClipPath = null;
+    private Rectangle clip = null;
     private Hashtable<String, ClipPath> clipPathHash = new Hashtable<String, ClipPath>();
     private String composingClipPath = null;
     private String composingPattern = null;
+    private Hashtable<String, Gradient> gradientHash = new Hashtable<String, Gradient>();
     private List<MagickImage> imagesStack = new ArrayList<MagickImage>();
     private List<DrawInfo> infoStack = new ArrayList<DrawInfo>();
     private Hashtable<String, Pattern> patternHash = new Hashtable<String, Pattern>();
@@ -26,6 +29,10 @@ public class DrawContext {
         this.clipPathHash.put(name, new ClipPath(name, getImage().getWidth(), getImage().getHeight()));
     }
 
+    void addGradient(String name, Gradient gradient) {
+        this.gradientHash.put(name, gradient);
+    }
+
     void addPattern(Pattern pattern) {
         this.patternHash.put(pattern.getName(), pattern);
     }
@@ -55,12 +62,28 @@ public class DrawContext {
         infoStack = null;
     }
 
+    /**
+     * Returns the part of the image that drawing is limited to, or null for
+     * the whole image.
+     */
+    Rectangle getClip() {
+        return clip;
+    }
+
     public ClipPath getClipPath(String name){
         return this.clipPathHash.get(name);
     }
     
+    public Gradient getGradient(String name){
+        return this.gradientHash.get(name);
+    }
+
     public Graphics2D getGraphics() {
-        return (Graphics2D) getImage().getImage().getGraphics();
+        Graphics2D graphics = (Graphics2D) getImage().getImage().getGraphics();
+        if (clip != null) {
+            graphics.clip(clip);
+        }
+        return graphics;
     }
 
     public MagickImage getImage(){
@@ -75,6 +98,18 @@ public class DrawContext {
         return this.patternHash.get(name);
     }
     
+    public boolean hasGradient(String name){
+        return this.gradientHash.containsKey(name);
+    }
+
+    /**
+     * Tells whether the other context has the same gradients under the same
+     * names.
+     */
+    boolean hasSameGradients(DrawContext other) {
+        return gradientHash.equals(other.gradientHash);
+    }
+
     public boolean hasPattern(String name){
         return this.patternHash.containsKey(name);
     }
@@ -98,10 +133,21 @@ public class DrawContext {
         }
     }
 
+    /**
+     * Drops the DrawInfo pushed by pushInfo.
+     */
+    void popInfo() {
+        infoStack.remove(infoStack.size() - 1);
+    }
+
     public void prepareClipPath(String name) {
         this.applyClipPath = name;
     }
 
+    void setClip(Rectangle clip) {
+        this.clip = clip;
+    }
+
     public void push() {
         if(this.composingPattern != null){
             imagesStack.add(this.patternHash.get(this.composingPattern).getImage());
@@ -112,4 +158,12 @@ public class DrawContext {
         }
         infoStack.add(getInfo().clone());
     }
+
+    /**
+     * Pushes a copy of the DrawInfo without a layer, for when only the state
+     * matters, as while recording a display list.
+     */
+    void pushInfo() {
+        infoStack.add(getInfo().clone());
+    }
 }
@@ -0,0 +1,134 @@
+package magick4j;
+
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.WritableRaster;
+import java.util.List;
+
+/**
+ * Performs drawing commands against a context, skipping shapes that can't
+ * touch the image, or the part of it the context is clipped to.
+ */
+class DrawExecutor {
+
+    private final DrawContext context;
+    private final double[] corners = new double[8];
+    private final Rectangle2D reach = new Rectangle2D.Double();
+    private MagickImage scratch;
+    private final DrawStatistics statistics = new DrawStatistics();
+
+    public DrawExecutor(DrawContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Copies the pixels of the area row by row, which is much faster than
+     * setRect.
+     */
+    private void copy(WritableRaster source, WritableRaster target, Rectangle area) {
+        Object row = null;
+        for (int y = area.y; y < area.y + area.height; y++) {
+            row = source.getDataElements(area.x, y, area.width, 1, row);
+            target.setDataElements(area.x, y, area.width, 1, row);
+        }
+    }
+
+    public DrawStatistics execute(List<Command> commands) {
+        for (Command command : commands) {
+            perform(command);
+        }
+        return statistics;
+    }
+
+    /**
+     * Tells whether clipping leaves the pixels of the shape inside the clip as
+     * they would be without it, for shapes that cross the edge of the clip.
+     * There, the rasterizer splits curves, strokes may be cut short, and
+     * aliased rendering starts its edges where they enter the clip, which can
+     * all move pixels. Only antialiased fills of straight edges come out the
+     * same.
+     */
+    static boolean isClipExact(DrawInfo info, ShapeCommand command) {
+        return info.isStrokeAntialias() && !command.isCurved() && !command.isLine() && info.getStrokeGradient() == null
+                && info.getStroke().toColor().getAlpha() == 0;
+    }
+
+    /**
+     * Tells whether the shape, with its stroke, may touch the current image,
+     * or the part of it the context is clipped to. Clip paths are masks
+     * applied to the image afterwards, so they don't count here.
+     */
+    private boolean isVisible(ShapeCommand command) {
+        MagickImage image = context.getImage();
+        command.getDeviceReach(context.getInfo(), corners, reach);
+        Rectangle clip = context.getClip();
+        if (clip == null) {
+            return reach.getMaxX() >= 0 && reach.getMinX() <= image.getWidth()
+                    && reach.getMaxY() >= 0 && reach.getMinY() <= image.getHeight();
+        }
+        return reach.getMaxX() >= clip.x && reach.getMinX() <= clip.x + clip.width
+                && reach.getMaxY() >= clip.y && reach.getMinY() <= clip.y + clip.height;
+    }
+
+    public void perform(Command command) {
+        statistics.countCommand();
+        if (command instanceof ShapeCommand) {
+            statistics.countShape();
+            if (!isVisible((ShapeCommand) command)) {
+                statistics.countCulledShape();
+                return;
+            }
+            // Shapes that stay inside the clip aren't clipped at all.
+            if (context.getClip() != null && !context.getClip().contains(reach) && !isClipExact(context.getInfo(), (ShapeCommand) command)) {
+                performUnclipped((ShapeCommand) command);
+                return;
+            }
+        }
+        command.perform(context);
+    }
+
+    /**
+     * Performs the shape on a scratch image the size of the image, clipped to
+     * the part of it the shape may reach. The shape only crosses the edges of
+     * that part at the image bounds, as in a serial draw. The pixels inside
+     * the clip are copied there first and back afterwards. Rasterizers round
+     * coordinates differently once translated, so the scratch image isn't
+     * made any smaller.
+     */
+    private void performUnclipped(ShapeCommand command) {
+        BufferedImage image = context.getImage().getImage();
+        Rectangle area = reach.getBounds().intersection(new Rectangle(image.getWidth(), image.getHeight()));
+        Rectangle part = area.intersection(context.getClip());
+        if (part.isEmpty()) {
+            return;
+        }
+        if (scratch == null || scratch.getImage().getColorModel() != image.getColorModel()
+                || scratch.getWidth() != image.getWidth() || scratch.getHeight() != image.getHeight()) {
+            ColorModel model = image.getColorModel();
+            scratch = new MagickImage(new BufferedImage(model, model.createCompatibleWritableRaster(image.getWidth(), image.getHeight()), model.isAlphaPremultiplied(), null));
+        }
+        copy(image.getRaster(), scratch.getImage().getRaster(), part);
+        DrawContext scratchContext = new DrawContext(context.getInfo(), scratch);
+        try {
+            scratchContext.setClip(area);
+            command.perform(scratchContext);
+        } finally {
+            scratchContext.dispose();
+        }
+        copy(scratch.getImage().getRaster(), image.getRaster(), part);
+    }
+
+    /**
+     * Returns the scratch image, so that another executor on the same image can
+     * reuse it.
+     */
+    MagickImage getScratch() {
+        return scratch;
+    }
+
+    void setScratch(MagickImage scratch) {
+        this.scratch = scratch;
+    }
+}
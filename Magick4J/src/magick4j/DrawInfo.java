@@ -7,20 +7,47 @@ import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.GeneralPath;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 public class DrawInfo implements Cloneable {
 
+    private static final LruCache<String, Font> FONTS = new LruCache<String, Font>(256);
+
+    /**
+     * Fonts are immutable, so every DrawInfo shares one instance per family,
+     * style and size.
+     */
+    private static Font findFont(String family, int style, double size) {
+        String key = family + '\u0000' + style + '\u0000' + size;
+        Font font = FONTS.get(key);
+        if (font == null) {
+            font = new Font(family, style, (int) size).deriveFont((float) size);
+            FONTS.put(key, font);
+        }
+        return font;
+    }
+
+    // Derived from the fields below and dropped by the setters they depend on.
+    private BasicStroke basicStroke;
+    private Font font;
+
     private PixelPacket fill = ColorDatabase.queryDefault("black");
+    private Gradient fillGradient = null;
     private double fillOpacity = 1.0;
     private Pattern fillPattern = null;
     private int fillRule = GeneralPath.WIND_EVEN_ODD;
     private String fontFamily = "SansSerif";
     private int fontWeight;
+    private boolean glyphAtlas = false;
     private Gravity gravity = Gravity.FORGET;
+    private double pathTolerance = 0;
     private double pointSize = 12.0;
     private AffineTransform spaceTransformation = new AffineTransform(1,0,0,1,0,0);
     private PixelPacket stroke = ColorDatabase.queryDefault("none");
+    private Gradient strokeGradient = null;
     private boolean strokeAntialias = true;
     private double[] strokeDashArray;
     private int strokeLinecap = BasicStroke.CAP_BUTT;
@@ -28,11 +55,34 @@ public class DrawInfo implements Cloneable {
     private float strokeMiterLimit = 10f;
     private Pattern strokePattern = null;
     private double strokeWidth = 1.0;
+    private int tileSize = 0;
+    private int tileThreads = 0;
 
     public void annotate(MagickImage image, double width, double height, double iniX, double iniY, String text) {
-        
-        text = new TextFormatter(image).format(text);
-        
+        annotate(image, Collections.singletonList(new Annotation(width, height, iniX, iniY, text)));
+    }
+
+    /**
+     * Draws all the annotations in one graphics session, with the font and
+     * the rendering hints set up once for all of them.
+     */
+    public void annotate(MagickImage image, List<Annotation> annotations) {
+        Graphics2D graphics = createGraphics(image);
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            updateFont(graphics);
+            graphics.setColor(fill.toColor());
+            TextFormatter formatter = new TextFormatter(image);
+            for (Annotation annotation : annotations) {
+                Gravity gravity = annotation.getGravity() == null ? this.gravity : annotation.getGravity();
+                annotate(graphics, image, annotation.getWidth(), annotation.getHeight(), annotation.getX(), annotation.getY(), gravity, formatter.format(annotation.getText()));
+            }
+        } finally {
+            graphics.dispose();
+        }
+    }
+
+    private void annotate(Graphics2D graphics, MagickImage image, double width, double height, double iniX, double iniY, Gravity gravity, String text) {
         if (width == 0 && height == 0) {
             width = image.getWidth();
             height = image.getHeight();
@@ -40,68 +90,59 @@ public class DrawInfo implements Cloneable {
         
         TypeMetrics mlm = this.getMultilineTypeMetrics(text, image);
         
-        Graphics2D graphics = createGraphics(image);
-        try {
-            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            updateFont(graphics);
-            
-            String[] strings = text.split("\n");
+        String[] strings = text.split("\n");
+        
+        double y = iniY;
+        
+        
+        switch (gravity) {
+            case CENTER:
+            case EAST:
+            case WEST:
+                y += 0.5 * (height - mlm.getHeight());
+                break;
+//            case NORTH:
+//            case NORTH_EAST:
+//            case NORTH_WEST:
+//                DO NOTHING
+//                break;
+            case SOUTH:
+            case SOUTH_EAST:
+            case SOUTH_WEST:
+                y += height - mlm.getHeight();
+                break;
+        }
+        
+        y += mlm.getAscent();
+        
+        for(int i = 0; i<strings.length; i++){
             
-            double y = iniY;
+            TypeMetrics slm = this.getTypeMetrics(strings[i], image);
             
+            double x = iniX;
             
+            // x gravity
             switch (gravity) {
                 case CENTER:
-                case EAST:
-                case WEST:
-                    y += 0.5 * (height - mlm.getHeight());
-                    break;
-//                case NORTH:
-//                case NORTH_EAST:
-//                case NORTH_WEST:
-//                    DO NOTHING
-//                    break;
+                case NORTH:
                 case SOUTH:
+                    //x += 0.5 * (width - metrics.stringWidth(text));
+                    x += 0.5 * (width - slm.getWidth());
+                    break;
+                case EAST:
+                case NORTH_EAST:
                 case SOUTH_EAST:
-                case SOUTH_WEST:
-                    y += height - mlm.getHeight();
+                    //x = width - metrics.stringWidth(text) - x;
+                    x += width - slm.getWidth();
                     break;
             }
             
-            y += mlm.getAscent();
-            
-            for(int i = 0; i<strings.length; i++){
-                
-                TypeMetrics slm = this.getTypeMetrics(strings[i], image);
-                
-                double x = iniX;
-                
-                // x gravity
-                switch (gravity) {
-                    case CENTER:
-                    case NORTH:
-                    case SOUTH:
-                        //x += 0.5 * (width - metrics.stringWidth(text));
-                        x += 0.5 * (width - slm.getWidth());
-                        break;
-                    case EAST:
-                    case NORTH_EAST:
-                    case SOUTH_EAST:
-                        //x = width - metrics.stringWidth(text) - x;
-                        x += width - slm.getWidth();
-                        break;
-                }
-                
-                // TODO If we have a fill and a stroke, we may need to make a path
-                graphics.setColor(fill.toColor());
-                
+            // TODO If we have a fill and a stroke, we may need to make a path
+            if (!glyphAtlas || !GlyphAtlas.draw(image, getFont(), true, fill, strings[i], (float) x, (float) y)) {
                 graphics.drawString(strings[i], (float) x, (float) y);
-                
-                y += slm.getHeight();
             }
-                
-        } finally {
-            graphics.dispose();
+            
+            y += slm.getHeight();
         }
     }
 
@@ -127,14 +168,19 @@ public class DrawInfo implements Cloneable {
         }
     }
 
-    public void draw(MagickImage image, List<Command> commands) {
+    /**
+     * Performs the commands on the image and returns what was done, such as
+     * how many shapes were skipped for lying outside the image.
+     */
+    public DrawStatistics draw(MagickImage image, List<Command> commands) {
+        if (tileSize > 0 && TiledDrawExecutor.canTile(commands)) {
+            return TiledDrawExecutor.execute(this, image, commands, tileSize, tileThreads);
+        }
         Graphics2D graphics = image.getImage().createGraphics();
         try {
             DrawContext context = new DrawContext(this, image);
             try {
-                for (Command command : commands) {
-                    command.perform(context);
-                }
+                return new DrawExecutor(context).execute(commands);
             } finally {
                 context.dispose();
             }
@@ -143,10 +189,46 @@ public class DrawInfo implements Cloneable {
         }
     }
 
+    public DrawStatistics draw(MagickImage image, DrawProgram program) {
+        return draw(image, program.getCommands());
+    }
+
+    /**
+     * Finds the largest whole point size, between the given limits, at which
+     * the text fits a box of the given size with the current font family and
+     * weight. With wrap set, lines are also broken between words so that they
+     * fit the width. The sizes are binary searched against cached metrics, so
+     * this costs a few lookups instead of a measure per size.
+     */
+    public TextFit fitText(String text, double width, double height, double minPointSize, double maxPointSize, boolean wrap) {
+        int low = (int) Math.ceil(minPointSize);
+        int high = (int) Math.floor(maxPointSize);
+        if (high < low) {
+            return layoutText(text, width, height, Math.min(minPointSize, maxPointSize), wrap);
+        }
+        TextFit best = null;
+        while (low <= high) {
+            int size = (low + high) >>> 1;
+            TextFit fit = layoutText(text, width, height, size, wrap);
+            if (fit.isFit()) {
+                best = fit;
+                low = size + 1;
+            } else {
+                high = size - 1;
+            }
+        }
+        // Nothing fits, so the text is laid out as small as allowed.
+        return best != null ? best : layoutText(text, width, height, Math.min(Math.ceil(minPointSize), maxPointSize), wrap);
+    }
+
     public PixelPacket getFill() {
         return fill;
     }
 
+    public Gradient getFillGradient() {
+        return fillGradient;
+    }
+
     public double getFillOpacity() {
         return fillOpacity;
     }
@@ -159,27 +241,51 @@ public class DrawInfo implements Cloneable {
         return this.fillRule;
     }
 
+    /**
+     * Returns the stroke for the current line style at the given width, which
+     * is usually the stroke width scaled by the space transformation.
+     */
+    public BasicStroke getBasicStroke(float width) {
+        BasicStroke stroke = this.basicStroke;
+        if (stroke == null || stroke.getLineWidth() != width) {
+            if (strokeDashArray != null) {
+                float[] floatDashArray = new float[strokeDashArray.length];
+                for (int d = 0; d < strokeDashArray.length; d++) {
+                    floatDashArray[d] = (float) strokeDashArray[d];
+                }
+                stroke = new BasicStroke(width, strokeLinecap, strokeLinejoin, strokeMiterLimit, floatDashArray, 0f);
+            } else {
+                stroke = new BasicStroke(width, strokeLinecap, strokeLinejoin, strokeMiterLimit);
+            }
+            this.basicStroke = stroke;
+        }
+        return stroke;
+    }
+
+    public Font getFont() {
+        if (font == null) {
+            font = findFont(fontFamily, getFontStyle(), pointSize);
+        }
+        return font;
+    }
+
+    private int getFontStyle() {
+        return fontWeight >= 700 ? Font.BOLD : Font.PLAIN;
+    }
+
     public String getFontFamily() {
         return fontFamily;
     }
     
     public TypeMetrics getMultilineTypeMetrics(String string, MagickImage image) {
+        // The image doesn't matter: every image graphics measures the same way.
         TypeMetrics metrics = new TypeMetrics();
-        if (image == null) {
-            image = new MagickImage(1, 1);
-        }
-        Graphics2D graphics = createGraphics(image);
-        try {
-            updateFont(graphics);
-            
-            String[] line = string.split("\n");
-            
-            for(int i=0; i < line.length; i++)
-                metrics.compose(TypeMetrics.fromFontMetrics(graphics.getFontMetrics(), line[i]));
-            
-        } finally {
-            graphics.dispose();
-        }
+        Font font = getFont();
+        String[] line = string.split("\n");
+        
+        for(int i=0; i < line.length; i++)
+            metrics.compose(TypeMetricsCache.getTypeMetrics(font, line[i]));
+        
         return metrics;
     }
     
@@ -187,10 +293,18 @@ public class DrawInfo implements Cloneable {
         return this.spaceTransformation;
     }
 
+    public double getPathTolerance() {
+        return pathTolerance;
+    }
+
     public PixelPacket getStroke() {
         return stroke;
     }
 
+    public Gradient getStrokeGradient() {
+        return strokeGradient;
+    }
+
     public double[] getStrokeDashArray() {
         return strokeDashArray;
     }
@@ -215,25 +329,81 @@ public class DrawInfo implements Cloneable {
         return strokeWidth;
     }
 
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public int getTileThreads() {
+        return tileThreads;
+    }
+
     public TypeMetrics getTypeMetrics(String string, MagickImage image) {
-        TypeMetrics metrics = new TypeMetrics();
-        if (image == null) {
-            image = new MagickImage(1, 1);
-        }
-        Graphics2D graphics = createGraphics(image);
-        try {
-            updateFont(graphics);
-            metrics = TypeMetrics.fromFontMetrics(graphics.getFontMetrics(), string);
-        } finally {
-            graphics.dispose();
-        }
-        return metrics;
+        return TypeMetricsCache.getTypeMetrics(getFont(), string);
+    }
+
+    /**
+     * Tells whether everything, text included, comes out the same with the
+     * other DrawInfo as with this one: the style and the font both match.
+     */
+    boolean hasSameState(DrawInfo other) {
+        return hasSameStyle(other) && fontFamily.equals(other.fontFamily) && fontWeight == other.fontWeight && pointSize == other.pointSize;
+    }
+
+    /**
+     * Tells whether shapes come out the same with the other DrawInfo as with
+     * this one: the transformation, colors and line style all match.
+     */
+    boolean hasSameStyle(DrawInfo other) {
+        return fill.equals(other.fill) && fillGradient == other.fillGradient && fillOpacity == other.fillOpacity && fillPattern == other.fillPattern
+                && fillRule == other.fillRule && pathTolerance == other.pathTolerance
+                && spaceTransformation.equals(other.spaceTransformation) && stroke.equals(other.stroke)
+                && strokeGradient == other.strokeGradient && strokeAntialias == other.strokeAntialias && Arrays.equals(strokeDashArray, other.strokeDashArray)
+                && strokeLinecap == other.strokeLinecap && strokeLinejoin == other.strokeLinejoin
+                && strokeMiterLimit == other.strokeMiterLimit && strokePattern == other.strokePattern
+                && strokeWidth == other.strokeWidth;
+    }
+
+    public boolean isGlyphAtlas() {
+        return glyphAtlas;
     }
 
     public boolean isStrokeAntialias() {
         return strokeAntialias;
     }
 
+    private TextFit layoutText(String text, double width, double height, double size, boolean wrap) {
+        Font font = findFont(fontFamily, getFontStyle(), size);
+        FontMetrics fontMetrics = TypeMetricsCache.getFontMetrics(font);
+        List<String> lines = new ArrayList<String>();
+        for (String paragraph : text.split("\n")) {
+            if (!wrap) {
+                lines.add(paragraph);
+                continue;
+            }
+            // Greedy: each word goes on the current line if it still fits.
+            String line = null;
+            for (String word : paragraph.split(" +")) {
+                if (word.length() == 0) {
+                    // Spaces leading the paragraph.
+                    continue;
+                } else if (line == null) {
+                    line = word;
+                } else if (fontMetrics.stringWidth(line + ' ' + word) <= width) {
+                    line = line + ' ' + word;
+                } else {
+                    lines.add(line);
+                    line = word;
+                }
+            }
+            lines.add(line == null ? "" : line);
+        }
+        TypeMetrics metrics = new TypeMetrics();
+        for (String line : lines) {
+            metrics.compose(TypeMetricsCache.getTypeMetrics(font, line));
+        }
+        return new TextFit(size, lines, metrics, metrics.getWidth() <= width && metrics.getHeight() <= height);
+    }
+
     public void rotate(double rotation) {
         this.spaceTransformation.concatenate(AffineTransform.getRotateInstance(Math.toRadians(rotation)));
     }
@@ -242,13 +412,20 @@ public class DrawInfo implements Cloneable {
         this.spaceTransformation.concatenate(AffineTransform.getScaleInstance(scaleX, scaleY));
     }
 
+    public void setFill(Gradient fill) {
+        this.fillGradient = fill;
+        this.fillPattern = null;
+    }
+
     public void setFill(Pattern fill){
         this.fillPattern = fill;
+        this.fillGradient = null;
     }
     
     public void setFill(PixelPacket fill) {
         // TODO Clone?
         this.fill = fill;
+        this.fillGradient = null;
         this.fillPattern = null;
     }
 
@@ -262,31 +439,59 @@ public class DrawInfo implements Cloneable {
 
     public void setFontFamily(String fontFamily) {
         this.fontFamily = fontFamily;
+        this.font = null;
     }
 
     public void setFontWeight(int fontWeight) {
         this.fontWeight = fontWeight;
+        this.font = null;
+    }
+
+    /**
+     * Makes annotate draw text through the shared GlyphAtlas instead of
+     * drawString, whenever the image and the text allow it.
+     */
+    public void setGlyphAtlas(boolean glyphAtlas) {
+        this.glyphAtlas = glyphAtlas;
     }
 
     public void setGravity(Gravity gravity) {
         this.gravity = gravity;
     }
 
+    /**
+     * Sets how far, in pixels, a simplified polyline, polygon or path may
+     * stray from the original. Vertices closer than that to the simplified
+     * line are dropped after the space transformation. Zero, the default,
+     * keeps every vertex.
+     */
+    public void setPathTolerance(double pathTolerance) {
+        this.pathTolerance = pathTolerance;
+    }
+
     public void setPointSize(double pointSize) {
         this.pointSize = pointSize;
+        this.font = null;
     }
 
     private void setSpaceTransformation(AffineTransform spaceTransformation) {
         this.spaceTransformation = spaceTransformation;
     }
 
+    public void setStroke(Gradient stroke) {
+        this.strokeGradient = stroke;
+        this.strokePattern = null;
+    }
+
     public void setStroke(Pattern color) {
         this.strokePattern = color;
+        this.strokeGradient = null;
     }
 
     public void setStroke(PixelPacket stroke) {
         // TODO Clone?
         this.stroke = stroke;
+        this.strokeGradient = null;
         this.strokePattern = null;
     }
 
@@ -296,28 +501,59 @@ public class DrawInfo implements Cloneable {
 
     public void setStrokeDashArray(double... lengths) {
         this.strokeDashArray = lengths;
+        this.basicStroke = null;
     }
 
     public void setStrokeLinecap(int linecap) {
         this.strokeLinecap = linecap;
+        this.basicStroke = null;
     }
 
     public void setStrokeLinejoin(int linejoin) {
         this.strokeLinejoin = linejoin;
+        this.basicStroke = null;
     }
     
     public void setStrokeMiterLimit(float miterLimit) {
         this.strokeMiterLimit = miterLimit/2; //DO NOT CHANGE THIS. It converts the miterLimit from ImageMagick to Java.
+        this.basicStroke = null;
     }
     
+    /**
+     * Changes the opacity of the stroke color, leaving a gradient or pattern
+     * stroke in place.
+     */
+    public void setStrokeOpacity(double opacity) {
+        // The color may be shared, even with the color database, so change a copy.
+        this.stroke = new PixelPacket(stroke.getValue().withOpacity((int) Math.round(255 * (1 - opacity))));
+    }
+
     public void setStrokePattern(Pattern pattern){
         this.strokePattern = pattern;
+        this.strokeGradient = null;
     }
 
     public void setStrokeWidth(double width) {
         this.strokeWidth = width;
     }
     
+    /**
+     * Makes draw split the image into tiles of the given size and render them
+     * in parallel, when the commands allow it. The result is the same as a
+     * serial draw. Zero, the default, draws serially.
+     */
+    public void setTileSize(int tileSize) {
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * Sets how many threads at most draw the tiles of one draw. Zero, the
+     * default, means one per processor.
+     */
+    public void setTileThreads(int tileThreads) {
+        this.tileThreads = tileThreads;
+    }
+
     public void skewX(double degrees){
         AffineTransform af = new AffineTransform(1d, 0d, Math.tan(Math.toRadians(degrees)), 1d, 0d, 0d);
         this.spaceTransformation.concatenate(af);
@@ -333,9 +569,6 @@ public class DrawInfo implements Cloneable {
     }
 
     private void updateFont(Graphics2D graphics) {
-        Font font = new Font(fontFamily, fontWeight >= 700 ? Font.BOLD : Font.PLAIN,
-                (int) pointSize).deriveFont((float) pointSize);
-        
-        graphics.setFont(font);
+        graphics.setFont(getFont());
     }
 }
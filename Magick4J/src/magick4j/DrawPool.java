@@ -0,0 +1,39 @@
+package magick4j;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the thread pool that tiled draws and gradient fills share. It has a
+ * daemon thread per processor, and its threads end after a while without
+ * work, so an idle pool holds none.
+ */
+class DrawPool {
+
+    /** How long idle pool threads are kept, in seconds. */
+    private static final int KEEP_ALIVE = 30;
+
+    private static ExecutorService pool;
+
+    static synchronized ExecutorService get() {
+        if (pool == null) {
+            int threads = Runtime.getRuntime().availableProcessors();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "magick4j-draw");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+            pool = executor;
+        }
+        return pool;
+    }
+
+    private DrawPool() {
+    }
+}
@@ -0,0 +1,84 @@
+package magick4j;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * An MVG script parsed once into its commands. The commands are immutable
+ * and the display lists are kept under a lock, so the same instance can be
+ * drawn any number of times, onto any image, from any thread.
+ */
+public final class DrawProgram {
+
+    private static final LruCache<String, DrawProgram> CACHE = new LruCache<String, DrawProgram>(64);
+
+    /** How many display lists, recorded with different DrawInfos, are kept. */
+    private static final int DISPLAY_LISTS = 4;
+
+    public static void clearCache() {
+        CACHE.clear();
+    }
+
+    /**
+     * Returns the compiled program for the script, parsing it only if the same
+     * script text isn't already in the cache.
+     */
+    public static DrawProgram compile(String script) {
+        DrawProgram program = CACHE.get(script);
+        if (program == null) {
+            program = new DrawProgram(script, CommandParser.parse(script));
+            CACHE.put(script, program);
+        }
+        return program;
+    }
+
+    private final List<Command> commands;
+    private final List<DisplayList> displayLists = new LinkedList<DisplayList>();
+    private final String script;
+
+    private DrawProgram(String script, List<Command> commands) {
+        this.script = script;
+        this.commands = Collections.unmodifiableList(commands);
+    }
+
+    /**
+     * Returns the program recorded with the DrawInfo, recording it the first
+     * time, or null if the program can't be recorded. The last few lists are
+     * kept, each for the DrawInfo state it was recorded with, and since
+     * programs are cached by script, so are their display lists.
+     */
+    public DisplayList getDisplayList(DrawInfo info) {
+        if (!DisplayList.canRecord(info, commands)) {
+            return null;
+        }
+        synchronized (displayLists) {
+            for (Iterator<DisplayList> i = displayLists.iterator(); i.hasNext();) {
+                DisplayList displayList = i.next();
+                if (displayList.isRecordedWith(info)) {
+                    i.remove();
+                    displayLists.add(0, displayList);
+                    return displayList;
+                }
+            }
+        }
+        // Record outside the lock. Two threads may both record, which is harmless.
+        DisplayList displayList = DisplayList.record(info, commands);
+        synchronized (displayLists) {
+            displayLists.add(0, displayList);
+            if (displayLists.size() > DISPLAY_LISTS) {
+                displayLists.remove(DISPLAY_LISTS);
+            }
+        }
+        return displayList;
+    }
+
+    public List<Command> getCommands() {
+        return commands;
+    }
+
+    public String getScript() {
+        return script;
+    }
+}
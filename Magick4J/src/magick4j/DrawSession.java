@@ -0,0 +1,180 @@
+package magick4j;
+
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps an image drawn from a command list, along with the device bounds
+ * each shape may paint, so that replacing some of the commands only redraws
+ * the region they cover before and after. That region is restored from the
+ * image as it was before the first draw, then every shape that reaches it is
+ * drawn again, clipped to it, in order. The result is the same as drawing the
+ * new list from scratch.
+ *
+ * When the replaced commands leave a different style or different gradient
+ * definitions behind, every shape after them is redrawn too. Only lists that
+ * change state and draw shapes are supported. Sessions aren't thread safe.
+ */
+public class DrawSession {
+
+    private final MagickImage base;
+    private List<Command> commands;
+    private final MagickImage image;
+    private final DrawInfo info;
+    private Rectangle2D[] reaches;
+    private MagickImage scratch;
+
+    /**
+     * Draws the commands onto the image with a copy of the DrawInfo.
+     */
+    public DrawSession(DrawInfo info, MagickImage image, List<Command> commands) {
+        check(commands);
+        this.info = info.clone();
+        this.image = image;
+        BufferedImage source = image.getImage();
+        this.base = new MagickImage(new BufferedImage(source.getColorModel(), source.copyData(null), source.isAlphaPremultiplied(), null));
+        this.commands = new ArrayList<Command>(commands);
+        this.reaches = measure(this.commands);
+        DrawContext context = new DrawContext(this.info.clone(), image);
+        try {
+            new DrawExecutor(context).execute(this.commands);
+        } finally {
+            context.dispose();
+        }
+    }
+
+    private static void check(List<Command> commands) {
+        if (!TiledDrawExecutor.canTile(commands)) {
+            throw new RuntimeException("draw sessions only support state changes and shapes");
+        }
+    }
+
+    public List<Command> getCommands() {
+        return Collections.unmodifiableList(commands);
+    }
+
+    public MagickImage getImage() {
+        return image;
+    }
+
+    /**
+     * Returns the device bounds each shape command may paint, or null for the
+     * other commands.
+     */
+    private Rectangle2D[] measure(List<Command> commands) {
+        Rectangle2D[] measured = new Rectangle2D[commands.size()];
+        double[] corners = new double[8];
+        DrawContext context = new DrawContext(info.clone(), image);
+        try {
+            for (int c = 0; c < measured.length; c++) {
+                Command command = commands.get(c);
+                if (command instanceof ShapeCommand) {
+                    measured[c] = new Rectangle2D.Double();
+                    ((ShapeCommand) command).getDeviceReach(context.getInfo(), corners, measured[c]);
+                } else {
+                    command.perform(context);
+                }
+            }
+        } finally {
+            context.dispose();
+        }
+        return measured;
+    }
+
+    /**
+     * Replaces the commands from start, inclusive, to end, exclusive, and
+     * redraws what they change. Returns the region redrawn, or null if
+     * nothing was.
+     */
+    public Rectangle replace(int start, int end, List<Command> replacement) {
+        check(replacement);
+        List<Command> updated = new ArrayList<Command>(commands.subList(0, start));
+        updated.addAll(replacement);
+        updated.addAll(commands.subList(end, commands.size()));
+        Rectangle2D[] updatedReaches = measure(updated);
+        int updatedEnd = start + replacement.size();
+
+        Rectangle2D dirty = union(null, reaches, start, end);
+        dirty = union(dirty, updatedReaches, start, updatedEnd);
+        if (!isSameState(stateAt(commands, end), stateAt(updated, updatedEnd))) {
+            dirty = union(dirty, reaches, end, reaches.length);
+            dirty = union(dirty, updatedReaches, updatedEnd, updatedReaches.length);
+        }
+        commands = updated;
+        reaches = updatedReaches;
+        if (dirty == null) {
+            return null;
+        }
+        Rectangle region = dirty.getBounds().intersection(new Rectangle(image.getWidth(), image.getHeight()));
+        if (region.isEmpty()) {
+            return null;
+        }
+        redraw(region);
+        return region;
+    }
+
+    private void redraw(Rectangle region) {
+        WritableRaster source = base.getImage().getRaster(), target = image.getImage().getRaster();
+        Object row = null;
+        for (int y = region.y; y < region.y + region.height; y++) {
+            row = source.getDataElements(region.x, y, region.width, 1, row);
+            target.setDataElements(region.x, y, region.width, 1, row);
+        }
+        DrawContext context = new DrawContext(info.clone(), image);
+        try {
+            context.setClip(region);
+            DrawExecutor executor = new DrawExecutor(context);
+            executor.setScratch(scratch);
+            executor.execute(commands);
+            scratch = executor.getScratch();
+        } finally {
+            context.dispose();
+        }
+    }
+
+    /**
+     * Tells whether shapes come out the same after either context: the style
+     * matches and so do the gradients defined. Gradients are compared by
+     * instance, so one defined again always counts as changed.
+     */
+    private static boolean isSameState(DrawContext context, DrawContext other) {
+        try {
+            return context.getInfo().hasSameStyle(other.getInfo()) && context.hasSameGradients(other);
+        } finally {
+            context.dispose();
+            other.dispose();
+        }
+    }
+
+    /**
+     * Returns a context as the commands before index leave it. It must be
+     * disposed of.
+     */
+    private DrawContext stateAt(List<Command> commands, int index) {
+        DrawContext context = new DrawContext(info.clone(), image);
+        for (Command command : commands.subList(0, index)) {
+            if (command instanceof StateCommand) {
+                command.perform(context);
+            }
+        }
+        return context;
+    }
+
+    private static Rectangle2D union(Rectangle2D dirty, Rectangle2D[] reaches, int start, int end) {
+        for (int c = start; c < end; c++) {
+            if (reaches[c] != null) {
+                if (dirty == null) {
+                    dirty = (Rectangle2D) reaches[c].clone();
+                } else {
+                    dirty.add(reaches[c]);
+                }
+            }
+        }
+        return dirty;
+    }
+}
@@ -0,0 +1,56 @@
+package magick4j;
+
+/**
+ * Counts what one DrawInfo.draw did with its commands.
+ */
+public class DrawStatistics {
+    private int commandCount = 0;
+    private int culledShapeCount = 0;
+    private int shapeCount = 0;
+
+    DrawStatistics() {
+    }
+
+    DrawStatistics(int commandCount, int shapeCount, int culledShapeCount) {
+        this.commandCount = commandCount;
+        this.shapeCount = shapeCount;
+        this.culledShapeCount = culledShapeCount;
+    }
+
+    void countCommand() {
+        commandCount++;
+    }
+
+    void countCulledShape() {
+        culledShapeCount++;
+    }
+
+    void countShape() {
+        shapeCount++;
+    }
+
+    public int getCommandCount() {
+        return commandCount;
+    }
+
+    /**
+     * Returns how many shapes were skipped because they lay entirely outside
+     * the image.
+     */
+    public int getCulledShapeCount() {
+        return culledShapeCount;
+    }
+
+    public int getDrawnShapeCount() {
+        return shapeCount - culledShapeCount;
+    }
+
+    public int getShapeCount() {
+        return shapeCount;
+    }
+
+    @Override
+    public String toString() {
+        return "commands=" + commandCount + ", shapes=" + shapeCount + ", culled=" + culledShapeCount;
+    }
+}
@@ -0,0 +1,289 @@
+package magick4j;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Draws text from glyph coverage masks that are rasterized once per font,
+ * size, antialiasing mode and character, then blended with the fill color
+ * straight into the image pixels. Masks live in one process-wide LRU, so the
+ * labels and digits that charts repeat all the time are rasterized only once.
+ *
+ * Only images backed by packed ARGB ints and text without complex layout are
+ * handled. Callers fall back to Graphics2D.drawString for anything else. Use
+ * compare to check the output against drawString for a given font.
+ */
+public class GlyphAtlas {
+
+    private static final class Glyph {
+        private final float advance;
+        private final byte[] coverage;
+        private final int height;
+        private final int left;
+        private final int top;
+        private final int width;
+
+        public Glyph(int left, int top, int width, int height, float advance, byte[] coverage) {
+            this.left = left;
+            this.top = top;
+            this.width = width;
+            this.height = height;
+            this.advance = advance;
+            this.coverage = coverage;
+        }
+    }
+
+    private static final class Key {
+        private final boolean antialias;
+        private final char character;
+        private final Font font;
+        private final int hash;
+
+        public Key(Font font, boolean antialias, char character) {
+            this.font = font;
+            this.antialias = antialias;
+            this.character = character;
+            this.hash = (31 * font.hashCode() + character) * 2 + (antialias ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return hash == key.hash && character == key.character && antialias == key.antialias && font.equals(key.font);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final int[][] DIV8 = buildDivisionTable();
+    private static final LruCache<Key, Glyph> GLYPHS = new LruCache<Key, Glyph>(4096);
+    private static final int[][] MUL8 = buildMultiplicationTable();
+
+    public static void clear() {
+        GLYPHS.clear();
+    }
+
+    /**
+     * Renders the text both through the atlas and through drawString and
+     * returns the largest difference found in any channel of any pixel.
+     */
+    public static int compare(Font font, boolean antialias, PixelPacket color, String text) {
+        Rectangle bounds = font.getStringBounds(text, createFontRenderContext(antialias)).getBounds();
+        int width = bounds.width + 4, height = bounds.height + 4;
+        float x = 2 - bounds.x, y = 2 - bounds.y;
+
+        MagickImage expected = new MagickImage(width, height);
+        Graphics2D graphics = expected.getImage().createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antialias ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+            graphics.setFont(font);
+            graphics.setColor(color.toColor());
+            graphics.drawString(text, x, y);
+        } finally {
+            graphics.dispose();
+        }
+
+        MagickImage actual = new MagickImage(width, height);
+        if (!draw(actual, font, antialias, color, text, x, y)) {
+            throw new RuntimeException("text not supported by the glyph atlas: " + text);
+        }
+
+        int difference = 0;
+        for (int j = 0; j < height; j++) {
+            for (int i = 0; i < width; i++) {
+                int a = expected.getImage().getRGB(i, j), b = actual.getImage().getRGB(i, j);
+                for (int shift = 0; shift < 32; shift += 8) {
+                    difference = Math.max(difference, Math.abs(((a >>> shift) & 0xFF) - ((b >>> shift) & 0xFF)));
+                }
+            }
+        }
+        return difference;
+    }
+
+    private static FontRenderContext createFontRenderContext(boolean antialias) {
+        return new FontRenderContext(null, antialias, false);
+    }
+
+    /**
+     * Draws the text with its baseline origin at (x, y). Returns false, having
+     * drawn nothing, when the image or the text isn't supported.
+     */
+    public static boolean draw(MagickImage image, Font font, boolean antialias, PixelPacket color, String text, double x, double y) {
+        BufferedImage target = image.getImage();
+        if (target.getType() != BufferedImage.TYPE_INT_ARGB || !isSimple(text)) {
+            return false;
+        }
+        WritableRaster raster = target.getRaster();
+        int[] pixels = ((DataBufferInt) raster.getDataBuffer()).getData();
+        SinglePixelPackedSampleModel sampleModel = (SinglePixelPackedSampleModel) raster.getSampleModel();
+        int stride = sampleModel.getScanlineStride();
+        // Where pixel 0,0 is, which isn't the start of the data for subimages.
+        int origin = raster.getDataBuffer().getOffset()
+                + sampleModel.getOffset(-raster.getSampleModelTranslateX(), -raster.getSampleModelTranslateY());
+        int width = target.getWidth(), height = target.getHeight();
+
+        Color fill = color.toColor();
+        int alpha = fill.getAlpha();
+        if (alpha == 0) {
+            return true;
+        }
+        int rgb = fill.getRGB();
+
+        int baseline = (int) Math.floor(y + 0.5);
+        double penX = x;
+        for (int c = 0; c < text.length(); c++) {
+            Glyph glyph = findGlyph(font, antialias, text.charAt(c));
+            int originX = (int) Math.floor(penX + 0.5);
+            penX += glyph.advance;
+
+            int left = originX + glyph.left, top = baseline + glyph.top;
+            int startI = Math.max(0, -left), endI = Math.min(glyph.width, width - left);
+            int startJ = Math.max(0, -top), endJ = Math.min(glyph.height, height - top);
+            for (int j = startJ; j < endJ; j++) {
+                int row = origin + (top + j) * stride + left;
+                int maskRow = j * glyph.width;
+                for (int i = startI; i < endI; i++) {
+                    int coverage = glyph.coverage[maskRow + i] & 0xFF;
+                    if (coverage != 0) {
+                        pixels[row + i] = blend(pixels[row + i], rgb, alpha, coverage);
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Source over for non premultiplied ARGB with the given coverage. This is
+     * the arithmetic of the Java2D mask fill loops, lookup tables included, so
+     * the result matches drawString.
+     */
+    private static int blend(int destination, int color, int colorAlpha, int coverage) {
+        int resultAlpha, resultRed, resultGreen, resultBlue;
+        int red = MUL8[colorAlpha][(color >> 16) & 0xFF];
+        int green = MUL8[colorAlpha][(color >> 8) & 0xFF];
+        int blue = MUL8[colorAlpha][color & 0xFF];
+        if (coverage != 0xFF) {
+            resultAlpha = MUL8[coverage][colorAlpha];
+            resultRed = MUL8[coverage][red];
+            resultGreen = MUL8[coverage][green];
+            resultBlue = MUL8[coverage][blue];
+        } else {
+            resultAlpha = colorAlpha;
+            resultRed = red;
+            resultGreen = green;
+            resultBlue = blue;
+        }
+        if (resultAlpha != 0xFF) {
+            int destinationAlpha = MUL8[0xFF - resultAlpha][destination >>> 24];
+            resultAlpha += destinationAlpha;
+            if (destinationAlpha != 0) {
+                int destinationRed = (destination >> 16) & 0xFF;
+                int destinationGreen = (destination >> 8) & 0xFF;
+                int destinationBlue = destination & 0xFF;
+                if (destinationAlpha != 0xFF) {
+                    destinationRed = MUL8[destinationAlpha][destinationRed];
+                    destinationGreen = MUL8[destinationAlpha][destinationGreen];
+                    destinationBlue = MUL8[destinationAlpha][destinationBlue];
+                }
+                resultRed += destinationRed;
+                resultGreen += destinationGreen;
+                resultBlue += destinationBlue;
+            }
+            if (resultAlpha != 0 && resultAlpha < 0xFF) {
+                resultRed = DIV8[resultAlpha][resultRed];
+                resultGreen = DIV8[resultAlpha][resultGreen];
+                resultBlue = DIV8[resultAlpha][resultBlue];
+            }
+        }
+        return (resultAlpha << 24) | (resultRed << 16) | (resultGreen << 8) | resultBlue;
+    }
+
+    private static int[][] buildDivisionTable() {
+        int[][] table = new int[256][256];
+        for (int i = 1; i < 256; i++) {
+            long increment = (0xFF000000L + (i / 2)) / i;
+            long value = 1L << 23;
+            for (int j = 0; j < 256; j++) {
+                table[i][j] = j < i ? (int) (value >> 24) : 0xFF;
+                value += increment;
+            }
+        }
+        return table;
+    }
+
+    private static int[][] buildMultiplicationTable() {
+        int[][] table = new int[256][256];
+        for (int i = 1; i < 256; i++) {
+            long increment = i * 0x10101L;
+            long value = increment + (1L << 23);
+            for (int j = 1; j < 256; j++) {
+                table[i][j] = (int) (value >> 24);
+                value += increment;
+            }
+        }
+        return table;
+    }
+
+    private static Glyph findGlyph(Font font, boolean antialias, char character) {
+        Key key = new Key(font, antialias, character);
+        Glyph glyph = GLYPHS.get(key);
+        if (glyph == null) {
+            glyph = rasterize(font, antialias, character);
+            GLYPHS.put(key, glyph);
+        }
+        return glyph;
+    }
+
+    /**
+     * Tells whether every character maps to a single glyph with no layout, the
+     * way drawString handles simple text.
+     */
+    private static boolean isSimple(String text) {
+        for (int c = 0; c < text.length(); c++) {
+            char character = text.charAt(c);
+            if (character < 0x20 || character >= 0x0300) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Glyph rasterize(Font font, boolean antialias, char character) {
+        FontRenderContext context = createFontRenderContext(antialias);
+        GlyphVector vector = font.createGlyphVector(context, new char[]{character});
+        float advance = (float) vector.getGlyphPosition(1).getX();
+        Rectangle bounds = vector.getGlyphPixelBounds(0, context, 0, 0);
+        if (bounds.isEmpty()) {
+            return new Glyph(0, 0, 0, 0, advance, new byte[0]);
+        }
+
+        BufferedImage mask = new BufferedImage(bounds.width, bounds.height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = mask.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, antialias ? RenderingHints.VALUE_TEXT_ANTIALIAS_ON : RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+            graphics.setColor(Color.WHITE);
+            graphics.drawGlyphVector(vector, -bounds.x, -bounds.y);
+        } finally {
+            graphics.dispose();
+        }
+        byte[] coverage = ((DataBufferByte) mask.getRaster().getDataBuffer()).getData();
+        return new Glyph(bounds.x, bounds.y, bounds.width, bounds.height, advance, coverage);
+    }
+}
@@ -0,0 +1,176 @@
+package magick4j;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.LinearGradientPaint;
+import java.awt.MultipleGradientPaint.ColorSpaceType;
+import java.awt.MultipleGradientPaint.CycleMethod;
+import java.awt.Paint;
+import java.awt.RadialGradientPaint;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A linear or radial gradient through any number of color stops, painted by
+ * Java2D's LinearGradientPaint and RadialGradientPaint. A radial gradient
+ * with its focus off the center is what is also known as a conical gradient.
+ * Past the first and last stops, their colors extend to the edges. MVG
+ * defines them with "push gradient" and "stop-color", and fills or strokes
+ * with them by name, like patterns.
+ *
+ * Paints are kept for the last transformation each gradient was drawn with,
+ * and in a cache shared by equal definitions. Stops are added while the
+ * gradient is defined, after which it may be drawn from any thread.
+ */
+public class Gradient {
+
+    private static final class Painted {
+        private final Paint paint;
+        private final AffineTransform transform;
+
+        public Painted(AffineTransform transform, Paint paint) {
+            this.transform = transform;
+            this.paint = paint;
+        }
+    }
+
+    private static final LruCache<String, Paint> PAINTS = new LruCache<String, Paint>(256);
+
+    /**
+     * Returns a radial gradient from the focus, at offset 0, to the circle
+     * around the center, at offset 1.
+     */
+    public static Gradient conical(double centerX, double centerY, double focusX, double focusY, double radius) {
+        return new Gradient(true, centerX, centerY, focusX, focusY, radius);
+    }
+
+    /**
+     * Returns a gradient along the line from the first point, at offset 0, to
+     * the second, at offset 1.
+     */
+    public static Gradient linear(double x1, double y1, double x2, double y2) {
+        return new Gradient(false, x1, y1, x2, y2, 0);
+    }
+
+    /**
+     * Returns a gradient from the center, at offset 0, to the circle, at
+     * offset 1.
+     */
+    public static Gradient radial(double centerX, double centerY, double radius) {
+        return new Gradient(true, centerX, centerY, centerX, centerY, radius);
+    }
+
+    private final List<Color> colors = new ArrayList<Color>();
+    private volatile Painted last;
+    private final List<Double> offsets = new ArrayList<Double>();
+    private final boolean radial;
+    private final double radius;
+    private final double x1;
+    private final double x2;
+    private final double y1;
+    private final double y2;
+
+    private Gradient(boolean radial, double x1, double y1, double x2, double y2, double radius) {
+        this.radial = radial;
+        this.x1 = x1;
+        this.y1 = y1;
+        this.x2 = x2;
+        this.y2 = y2;
+        this.radius = radius;
+    }
+
+    /**
+     * Adds a stop at an offset from 0 to 1. Stops go in order; one at the
+     * same offset as the one before makes a sharp edge.
+     */
+    public void addStop(double offset, PixelPacket color) {
+        offsets.add(offset);
+        colors.add(color.toColor());
+        last = null;
+    }
+
+    private Paint createPaint(AffineTransform transform) {
+        if (offsets.isEmpty()) {
+            throw new RuntimeException("gradient without stops");
+        }
+        // Java2D wants strictly increasing fractions, so stops at the same
+        // offset are nudged apart. Any left past 1 replace the last color.
+        List<Float> fractions = new ArrayList<Float>();
+        List<Color> stops = new ArrayList<Color>();
+        for (int s = 0; s < offsets.size(); s++) {
+            float fraction = (float) Math.max(0, Math.min(1, offsets.get(s)));
+            if (!fractions.isEmpty() && fraction <= fractions.get(fractions.size() - 1)) {
+                fraction = Math.nextUp(fractions.get(fractions.size() - 1));
+                if (fraction > 1) {
+                    stops.set(stops.size() - 1, colors.get(s));
+                    continue;
+                }
+            }
+            fractions.add(fraction);
+            stops.add(colors.get(s));
+        }
+        Color lastColor = stops.get(stops.size() - 1);
+        // Like SVG, a gradient of no length or radius paints its last color.
+        if (stops.size() == 1 || (radial ? radius <= 0 : x1 == x2 && y1 == y2)) {
+            return lastColor;
+        }
+        float[] fractionArray = new float[fractions.size()];
+        for (int f = 0; f < fractionArray.length; f++) {
+            fractionArray[f] = fractions.get(f);
+        }
+        Color[] colorArray = stops.toArray(new Color[stops.size()]);
+        if (radial) {
+            return new RadialGradientPaint(new Point2D.Double(x1, y1), (float) radius, new Point2D.Double(x2, y2), fractionArray, colorArray,
+                    CycleMethod.NO_CYCLE, ColorSpaceType.SRGB, transform);
+        }
+        return new LinearGradientPaint(new Point2D.Double(x1, y1), new Point2D.Double(x2, y2), fractionArray, colorArray,
+                CycleMethod.NO_CYCLE, ColorSpaceType.SRGB, transform);
+    }
+
+    /**
+     * Paints the whole image with the gradient, replacing its pixels.
+     */
+    public void fill(MagickImage image) {
+        Graphics2D graphics = image.getImage().createGraphics();
+        try {
+            graphics.setComposite(AlphaComposite.Src);
+            graphics.setPaint(getPaint(new AffineTransform()));
+            graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+        } finally {
+            graphics.dispose();
+        }
+    }
+
+    /**
+     * Returns the paint for the gradient in user space, drawn in device space
+     * through the transform.
+     */
+    public Paint getPaint(AffineTransform transform) {
+        Painted painted = last;
+        if (painted != null && painted.transform.equals(transform)) {
+            return painted.paint;
+        }
+        StringBuilder key = new StringBuilder();
+        key.append(radial).append(' ').append(x1).append(' ').append(y1).append(' ').append(x2).append(' ').append(y2).append(' ').append(radius);
+        for (int s = 0; s < offsets.size(); s++) {
+            key.append(' ').append(offsets.get(s)).append(':').append(colors.get(s).getRGB());
+        }
+        double[] matrix = new double[6];
+        transform.getMatrix(matrix);
+        for (double value : matrix) {
+            key.append(' ').append(value);
+        }
+        String cacheKey = key.toString();
+        Paint paint = PAINTS.get(cacheKey);
+        if (paint == null) {
+            paint = createPaint(transform);
+            PAINTS.put(cacheKey, paint);
+        }
+        // Keep a copy, since the transform of a DrawInfo changes in place.
+        last = new Painted(new AffineTransform(transform), paint);
+        return paint;
+    }
+}
@@ -1,15 +1,50 @@
 package magick4j;
 
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
 import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
+/**
+ * Colors are packed ARGB ints written row by row, straight into the pixels
+ * of images backed by them. Diagonal and radial fills look their colors up in
+ * a ramp of distances. Where a color level changes within an entry, the entry
+ * is left empty and the color is computed, so every pixel gets the color of
+ * its exact distance. Bands of rows are filled on the drawing thread pool.
+ */
 public class GradientFill {
+
+    /** Least rows a band filled by one thread has. */
+    private static final int BAND_ROWS = 64;
+
+    /** Most entries a ramp has. Farther distances are computed. */
+    private static final int MAX_RAMP = 1 << 16;
+
+    /** Least ramp entries per unit of distance. */
+    private static final int RAMP_RESOLUTION = 16;
+
+    /**
+     * Fills the pixels of row y starting at offset.
+     */
+    private interface Rows {
+        void fill(int y, int[] pixels, int offset);
+    }
+
     private PixelPacket endColor;
+    private int[] ramp;
+    private double rampResolution;
     private PixelPacket startColor;
     private double x1;
     private double x2;
     private double y1;
     private double y2;
-    
+
     private double stepRed;
     private double stepGreen;
     private double stepBlue;
@@ -22,24 +57,45 @@ public class GradientFill {
         this.startColor = startColor;
         this.endColor = endColor;
     }
-    
-    private double[] calculatePixel(double distance){
-        double[] data = new double[4];
-        
-        data[0] = ((double)this.startColor.getRed())   +(this.stepRed   * distance);
-        data[1] = ((double)this.startColor.getGreen()) +(this.stepGreen * distance);
-        data[2] = ((double)this.startColor.getBlue())  +(this.stepBlue  * distance);
-        data[3] = 255.0; // Taken from the rmfill.c file.
-        
-        return data;
+
+    private int calculatePixel(double distance){
+        int red   = (int) (((double)this.startColor.getRed())   +(this.stepRed   * distance));
+        int green = (int) (((double)this.startColor.getGreen()) +(this.stepGreen * distance));
+        int blue  = (int) (((double)this.startColor.getBlue())  +(this.stepBlue  * distance));
+        // Opaque, taken from the rmfill.c file.
+        return 0xFF000000 | (red & 0xFF) << 16 | (green & 0xFF) << 8 | blue & 0xFF;
     }
-    
+
     private void calculateSteps(double steps){
         stepRed   = (((double)this.endColor.getRed()     - this.startColor.getRed()  ))/steps;
         stepBlue  = (((double)this.endColor.getBlue()    - this.startColor.getBlue() ))/steps;
         stepGreen = (((double)this.endColor.getGreen()   - this.startColor.getGreen()))/steps;
     }
 
+    /**
+     * Computes the ramp for distances up to steps, after calculateSteps. Each
+     * channel only grows or only shrinks with the distance, so an entry whose
+     * (slightly widened) ends have the same color has it throughout. Entries
+     * where the color changes stay 0, which no opaque color is.
+     */
+    private void calculateRamp(double steps) {
+        // Entries a sixteenth of a level apart at most, so few are left empty.
+        double step = Math.max(Math.abs(stepRed), Math.max(Math.abs(stepGreen), Math.abs(stepBlue)));
+        rampResolution = Math.max(RAMP_RESOLUTION, Math.ceil(16 * step));
+        int size = steps > 0 ? (int) Math.min(MAX_RAMP, Math.ceil(steps * rampResolution) + 1) : 0;
+        ramp = new int[size];
+        for (int i = 0; i < size; i++) {
+            int start = calculatePixel((i - 0.001) / rampResolution);
+            ramp[i] = start == calculatePixel((i + 1.001) / rampResolution) ? start : 0;
+        }
+    }
+
+    private int lookUpPixel(double distance) {
+        int index = (int) (distance * rampResolution);
+        int pixel = index >= 0 && index < ramp.length ? ramp[index] : 0;
+        return pixel != 0 ? pixel : calculatePixel(distance);
+    }
+
     public void fill(MagickImage image) {
         // I have to admit to looking at rmfill.c for some reference on how this works.
         if (Math.abs(x2 - x1) < 0.5) {
@@ -58,7 +114,7 @@ public class GradientFill {
             double m = (this.y2-this.y1) / (this.x2-this.x1);
             double mainDiagonal = image.getHeight()/image.getWidth();
             double b = this.y1 - (m*this.x1);
-            
+
             if(Math.abs(m) <= mainDiagonal){
                 // Why is this called vertical, when the line more horizontal
                 // than vertical? If verticalFill is called verticalFill then
@@ -67,24 +123,84 @@ public class GradientFill {
             }else{
                 horizontalDiagonalFill(image, m, b);
             }
-            
+
         }
-        
-        image.getImage().createGraphics().dispose();
-        
-        
     }
 
-    private void horizontalDiagonalFill(MagickImage image, double m, double b) {
-        int columns = image.getWidth(), rows = image.getHeight();
-        
-        
+    /**
+     * Fills the image a band of rows per thread.
+     */
+    private static void fillRows(MagickImage image, final Rows rows) {
+        final BufferedImage target = image.getImage();
+        final int columns = target.getWidth(), height = target.getHeight();
+        final int[] pixels;
+        final int origin, stride;
+        if (target.getType() == BufferedImage.TYPE_INT_ARGB) {
+            WritableRaster raster = target.getRaster();
+            SinglePixelPackedSampleModel sampleModel = (SinglePixelPackedSampleModel) raster.getSampleModel();
+            pixels = ((DataBufferInt) raster.getDataBuffer()).getData();
+            stride = sampleModel.getScanlineStride();
+            // Where pixel 0,0 is, which isn't the start of the data for subimages.
+            origin = raster.getDataBuffer().getOffset()
+                    + sampleModel.getOffset(-raster.getSampleModelTranslateX(), -raster.getSampleModelTranslateY());
+        } else {
+            pixels = null;
+            origin = stride = 0;
+        }
+        final int bands = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), height / BAND_ROWS));
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        try {
+            for (int band = 0; band < bands; band++) {
+                final int start = band * height / bands, end = (band + 1) * height / bands;
+                Callable<Object> task = new Callable<Object>() {
+                    public Object call() {
+                        if (pixels != null) {
+                            for (int y = start; y < end; y++) {
+                                rows.fill(y, pixels, origin + y * stride);
+                            }
+                        } else {
+                            int[] row = new int[columns];
+                            for (int y = start; y < end; y++) {
+                                rows.fill(y, row, 0);
+                                target.setRGB(0, y, columns, 1, row, 0, columns);
+                            }
+                        }
+                        return null;
+                    }
+                };
+                if (bands == 1) {
+                    task.call();
+                } else {
+                    futures.add(DrawPool.get().submit(task));
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw Thrower.throwAny(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Thrower.throwAny(e);
+        } catch (Exception e) {
+            throw Thrower.throwAny(e);
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private void horizontalDiagonalFill(MagickImage image, final double m, final double b) {
+        final int columns = image.getWidth(), rows = image.getHeight();
+
+
         // Calculate steps value.
         double steps = 0.0;
-        
+
         double distance1 = -b/m;
         double distance2 = (rows - b)/m;
-        
+
         if( distance1 < 0 && distance2 < 0){
             steps += Math.max(  Math.abs(distance1),
                                 Math.abs(distance2)
@@ -94,94 +210,85 @@ public class GradientFill {
                                 Math.abs(distance2 - columns)
                              );
         }
-        
+
         steps += Math.max(  Math.max(distance1, columns-distance1),
                             Math.max(distance2, columns-distance2)
                          );
-        
+
         // Things to do before entering the for loops.
         this.calculateSteps(steps);
-        
-        WritableRaster raster = image.getImage().getRaster();
-        
+        this.calculateRamp(steps);
+
         // For each pixel
-        for(int y = 0; y < rows; y++){
-            
-            for(int x = 0; x < columns; x++){
-                double distance = Math.abs(x - ((y-b)/m));
-                
-                double[] data = this.calculatePixel(distance);
-                
-                raster.setPixel(x, y, data);
+        fillRows(image, new Rows() {
+            public void fill(int y, int[] pixels, int offset) {
+                // Where the row crosses the line.
+                double cross = (y-b)/m;
+                for(int x = 0; x < columns; x++){
+                    pixels[offset + x] = lookUpPixel(Math.abs(x - cross));
+                }
             }
-            
-        }
+        });
     }
 
     private void horizontalFill(MagickImage image) {
-        int columns = image.getWidth(), rows = image.getHeight();
-        
+        final int columns = image.getWidth(), rows = image.getHeight();
+
         // Calculate the steps value.
         double steps = Math.max(this.y1, rows - this.y1);
-        
+
         if(this.y1 < 0){
             steps -= this.y1;
         }
-        
+
         // Things to do before entering the for loops.
         this.calculateSteps(steps);
-        
-        WritableRaster raster = image.getImage().getRaster();
-        
-        // First, it iterates over the y, because if two
-        // points have the same y value, then they have
+
+        // If two points have the same y value, then they have
         // the same color.
-        
-        for(int y = 0; y < rows; y++){
-            double distance = Math.abs(this.y1 - y);
-            double[] data = this.calculatePixel(distance);
-            
-            for(int x = 0; x < columns; x++){
-                raster.setPixel(x, y, data);
+
+        fillRows(image, new Rows() {
+            public void fill(int y, int[] pixels, int offset) {
+                double distance = Math.abs(y1 - y);
+                Arrays.fill(pixels, offset, offset + columns, calculatePixel(distance));
             }
-        }
+        });
     }
-    
+
     // Radial gradient.
     private void pointFill(MagickImage image){
-        int columns = image.getWidth(), rows = image.getHeight();
+        final int columns = image.getWidth(), rows = image.getHeight();
 
         // The steps are the distance from the point to the right, lower corner.
-        double steps = Math.sqrt((columns-this.x1)*(columns-this.x1) + (rows-this.y1)*(rows-this.y1));
+        final double steps = Math.sqrt((columns-this.x1)*(columns-this.x1) + (rows-this.y1)*(rows-this.y1));
 
         this.calculateSteps(steps);
+        this.calculateRamp(steps);
 
-        WritableRaster raster = image.getImage().getRaster();
+        // For each pixel.
+        fillRows(image, new Rows() {
+            public void fill(int y, int[] pixels, int offset) {
+                double dy = (y-y1)*(y-y1);
+                for(int x=0; x<columns; x++){
+                    double distance = Math.sqrt((x-x1)*(x-x1) + dy);
+                    if(distance > steps) distance = steps;
 
-        // For each pixel. 
-        for(int y=0; y<rows; y++){
-
-            for(int x=0; x<columns; x++){
-                double distance = Math.sqrt((x-this.x1)*(x-this.x1) + (y-this.y1)*(y-this.y1) );
-                if(distance > steps) distance = steps;
-
-                double data[] = this.calculatePixel(distance);
-                raster.setPixel(x, y, data);
+                    pixels[offset + x] = lookUpPixel(distance);
+                }
             }
-
-        }
+        });
 
     }
 
-    private void verticalDiagonalFill(MagickImage image, double m, double b) {
+    private void verticalDiagonalFill(MagickImage image, final double m, final double b) {
         // Renaming for convenience.
-        int columns = image.getWidth(), rows = image.getHeight();
-        
+        final int columns = image.getWidth(), rows = image.getHeight();
+
         double steps = 0.0;
-        
+
         double distance1 = b;
         double distance2 = m*columns + b;
-        
+
         if( distance1 < 0 && distance2 < 0){
             steps += Math.max(  Math.abs(distance1),
                                 Math.abs(distance2)
@@ -191,61 +298,53 @@ public class GradientFill {
                                 Math.abs(distance2 - rows)
                              );
         }
-        
+
         steps += Math.max(  Math.max(distance1, rows-distance1),
                             Math.max(distance2, rows-distance2)
                          );
-        
+
         // Fix the steps value.
-        
+
         this.calculateSteps(steps);
-        
-        WritableRaster raster = image.getImage().getRaster();
-        
-        for(int y = 0; y < rows; y++){
-            
-            for(int x = 0; x < columns; x++){
-                
-                double distance = Math.abs(y - (m*x + b));
-                
-                double[] data = this.calculatePixel(distance);
-                
-                raster.setPixel(x, y, data);
+        this.calculateRamp(steps);
+
+        fillRows(image, new Rows() {
+            public void fill(int y, int[] pixels, int offset) {
+                for(int x = 0; x < columns; x++){
+                    pixels[offset + x] = lookUpPixel(Math.abs(y - (m*x + b)));
+                }
             }
-            
-        }
+        });
     }
 
     private void verticalFill(MagickImage image){
         // Renaming for convenience.
-        int columns = image.getWidth(), rows = image.getHeight();
-        
+        final int columns = image.getWidth(), rows = image.getHeight();
+
         // Calculate the steps.
-        
+
         double steps = Math.max(this.x1, columns - this.x1);
-        
+
         // Fix the steps value.
-        
+
         if(this.x1 < 0){
             steps -= this.x1;
         }
-        
+
         this.calculateSteps(steps);
-        
-        WritableRaster raster = image.getImage().getRaster();
-        
-        // First, it iterates over the x, because if two
-        // points have the same x value, then they have
-        // the same color.
-        
+
+        // If two points have the same x value, then they have
+        // the same color, so every row is a copy of the first.
+
+        final int[] row = new int[columns];
         for(int x = 0; x < columns; x++){
             double distance = Math.abs(this.x1-x);
-            double[] data = this.calculatePixel(distance);
-            
-            for(int y = 0; y < rows; y++){
-                raster.setPixel(x, y, data);
-            }
-            
+            row[x] = this.calculatePixel(distance);
         }
+        fillRows(image, new Rows() {
+            public void fill(int y, int[] pixels, int offset) {
+                System.arraycopy(row, 0, pixels, offset, columns);
+            }
+        });
     }
 }
@@ -0,0 +1,26 @@
+package magick4j;
+
+/**
+ * Pushes or pops a graphic context. Drawing pushes a layer along with a copy
+ * of the DrawInfo, while recording a display list only needs the DrawInfo.
+ */
+class GraphicContextCommand implements Command {
+
+    private final boolean push;
+
+    public GraphicContextCommand(boolean push) {
+        this.push = push;
+    }
+
+    public boolean isPush() {
+        return push;
+    }
+
+    public void perform(DrawContext context) {
+        if (push) {
+            context.push();
+        } else {
+            context.pop();
+        }
+    }
+}
@@ -2,46 +2,215 @@ package magick4j;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.util.HashMap;
+import java.util.Map;
 
+/**
+ * Creates the built-in "pattern:" images. Each pattern is a tile, painted once
+ * the first time it is asked for and then kept, which TextureFill repeats over
+ * an image of the requested size. Tiles are black on white, but for the gray
+ * checkerboard. Only the common ImageMagick patterns are here, drawn to look
+ * like its bitmaps; other names give null.
+ */
 public class ImageDatabase {
 
+    /**
+     * Paints a tile of the given size onto a white background, in black.
+     */
+    private static abstract class TilePainter {
+        private final int height;
+        private final int width;
+
+        public TilePainter(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        public abstract void paint(Graphics2D graphics, int width, int height);
+    }
+
+    /** 8x8 ordered dither thresholds, for the grays. */
+    private static final int[] BAYER = {
+         0, 32,  8, 40,  2, 34, 10, 42,
+        48, 16, 56, 24, 50, 18, 58, 26,
+        12, 44,  4, 36, 14, 46,  6, 38,
+        60, 28, 52, 20, 62, 30, 54, 22,
+         3, 35, 11, 43,  1, 33,  9, 41,
+        51, 19, 59, 27, 49, 17, 57, 25,
+        15, 47,  7, 39, 13, 45,  5, 37,
+        63, 31, 55, 23, 61, 29, 53, 21,
+    };
+
+    private static final Map<String, TilePainter> PAINTERS = buildPainters();
+
+    private static final Map<String, MagickImage> TILES = new HashMap<String, MagickImage>();
+
+    private static Map<String, TilePainter> buildPainters() {
+        Map<String, TilePainter> painters = new HashMap<String, TilePainter>();
+
+        painters.put("bricks", new TilePainter(16, 16) {
+            public void paint(Graphics2D graphics, int width, int height) {
+                graphics.drawLine(0, 0, width - 1, 0);
+                graphics.drawLine(0, 8, width - 1, 8);
+                graphics.drawLine(0, 0, 0, 7);
+                graphics.drawLine(8, 8, 8, 15);
+            }
+        });
+
+        painters.put("checkerboard", new TilePainter(30, 30) {
+            public void paint(Graphics2D graphics, int width, int height) {
+                graphics.setColor(new Color(0x999999));
+                graphics.fillRect(0, 0, width, height);
+                graphics.setColor(new Color(0x666666));
+                graphics.fillRect(0, 15, 15, 15);
+                graphics.fillRect(15, 0, 15, 15);
+            }
+        });
+
+        painters.put("circles", new TilePainter(16, 16) {
+            public void paint(Graphics2D graphics, int width, int height) {
+                graphics.drawOval(2, 2, 11, 11);
+            }
+        });
+
+        TilePainter crosshatch = new TilePainter(8, 8) {
+            public void paint(Graphics2D graphics, int width, int height) {
+                graphics.drawLine(0, 0, width - 1, 0);
+                graphics.drawLine(0, 0, 0, height - 1);
+            }
+        };
+        painters.put("crosshatch", crosshatch);
+        painters.put("hs_cross", crosshatch);
+
+        TilePainter crosshatch45 = new TilePainter(8, 8) {
+            public void paint(Graphics2D graphics, int width, int height) {
+                graphics.drawLine(0, 0, width - 1, height - 1);
+                graphics.drawLine(0, height - 1, width - 1, 0);
+            }
+        };
+        painters.put("crosshatch45", crosshatch45);
+        painters.put("hs_diagcross", crosshatch45);
+
+        // Gray N has N percent of its pixels white, spread evenly.
+        for (int percent = 0; percent <= 100; percent += 5) {
+            final int white = (int) Math.round(percent * 64 / 100.0);
+            painters.put("gray" + percent, new TilePainter(8, 8) {
+                public void paint(Graphics2D graphics, int width, int height) {
+                    for (int y = 0; y < height; y++) {
+                        for (int x = 0; x < width; x++) {
+                            if (BAYER[y * 8 + x] >= white) {
+                                graphics.fillRect(x, y, 1, 1);
+                            }
+                        }
+                    }
+                }
+            });
+        }
+
+        painters.put("hexagons", new TilePainter(12, 8) {
+            public void paint(Graphics2D graphics, int width, int height) {
+                // Two hexagons per tile, drawn again a tile away on every
+                // side so the edges that cross the tile wrap around.
+                int[] xs = {0, 2, 6, 8, 6, 2};
+                int[] ys = {4, 0, 0, 4, 8, 8};
+                for (int dy = -height; dy <= height; dy += height) {
+                    for (int dx = -width; dx <= width; dx += width) {
+                        for (int v = 0; v < xs.length; v++) {
+                            int w = (v + 1) % xs.length;
+                            graphics.drawLine(xs[v] + dx, ys[v] + dy, xs[w] + dx, ys[w] + dy);
+                            graphics.drawLine(xs[v] + 6 + dx, ys[v] + 4 + dy, xs[w] + 6 + dx, ys[w] + 4 + dy);
+                        }
+                    }
+                }
+            }
+        });
+
+        TilePainter horizontal = new TilePainter(8, 8) {
+            public void paint(Graphics2D graphics, int width, int height) {
+                graphics.drawLine(0, 0, width - 1, 0);
+            }
+        };
+        painters.put("horizontal", horizontal);
+        painters.put("hs_horizontal", horizontal);
+
+        TilePainter left45 = new TilePainter(8, 8) {
+            public void paint(Graphics2D graphics, int width, int height) {
+                graphics.drawLine(0, height - 1, width - 1, 0);
+            }
+        };
+        painters.put("left45", left45);
+        painters.put("hs_bdiagonal", left45);
+
+        TilePainter right45 = new TilePainter(8, 8) {
+            public void paint(Graphics2D graphics, int width, int height) {
+                graphics.drawLine(0, 0, width - 1, height - 1);
+            }
+        };
+        painters.put("right45", right45);
+        painters.put("hs_fdiagonal", right45);
+
+        TilePainter vertical = new TilePainter(8, 8) {
+            public void paint(Graphics2D graphics, int width, int height) {
+                graphics.drawLine(0, 0, 0, height - 1);
+            }
+        };
+        painters.put("vertical", vertical);
+        painters.put("hs_vertical", vertical);
+
+        painters.put("verticalbricks", new TilePainter(16, 16) {
+            public void paint(Graphics2D graphics, int width, int height) {
+                graphics.drawLine(0, 0, 0, height - 1);
+                graphics.drawLine(8, 0, 8, height - 1);
+                graphics.drawLine(0, 0, 7, 0);
+                graphics.drawLine(8, 8, 15, 8);
+            }
+        });
+
+        return painters;
+    }
+
     public static MagickImage createDefault(String name, ImageInfo info) {
         return new ImageDatabase().create(name, info);
     }
 
-    private void paintCheckerboard(MagickImage image) {
-        Graphics2D graphics = image.getImage().createGraphics();
-        
-        try {
-            int width = image.getWidth();
-            int height = image.getHeight();
-            graphics.setColor(new Color(0x999999));
-            graphics.fillRect(0, 0, width, height);
-            graphics.setColor(new Color(0x666666));
-            int half = 15, full = 2 * half;
-            for (int x = 0; x < width; x += half) {
-                for (int y = x % full == 0 ? half : 0; y < height; y += full) {
-                    graphics.fillRect(x, y, half, half);
-                }
+    /**
+     * Returns the tile of the named pattern, painting it the first time.
+     * Tiles are only ever read afterwards.
+     */
+    private static synchronized MagickImage getTile(String pattern) {
+        MagickImage tile = TILES.get(pattern);
+        if (tile == null) {
+            TilePainter painter = PAINTERS.get(pattern);
+            if (painter == null) {
+                return null;
             }
-        } finally {
-            graphics.dispose();
+            tile = new MagickImage(painter.width, painter.height);
+            Graphics2D graphics = tile.getImage().createGraphics();
+            try {
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, painter.width, painter.height);
+                graphics.setColor(Color.BLACK);
+                painter.paint(graphics, painter.width, painter.height);
+            } finally {
+                graphics.dispose();
+            }
+            TILES.put(pattern, tile);
         }
+        return tile;
     }
 
     public MagickImage create(String name, ImageInfo info) {
-        // TODO Wow, this is a hack. Instead hash tiles and look them up. If not null, create dest image and replicate.
-        if (!name.equals("pattern:checkerboard")) {
+        if (!name.toLowerCase().startsWith("pattern:")) {
+            return null;
+        }
+        MagickImage tile = getTile(name.substring("pattern:".length()).toLowerCase());
+        if (tile == null) {
             return null;
         }
-        
+
         MagickImage image = new MagickImage((int) info.getSize().getWidth(), (int) info.getSize().getHeight());
         image.setFormat("PATTERN");
-        if (name.equals("pattern:checkerboard")) {
-            paintCheckerboard(image);
-        } else {
-        // TODO Lots more, and reorganize this anyway.
-        }
+        new TextureFill(tile).fill(image);
         return image;
     }
 }
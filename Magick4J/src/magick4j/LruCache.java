@@ -0,0 +1,40 @@
+package magick4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, synchronized map that evicts the least recently used entry once
+ * it grows past its capacity.
+ */
+class LruCache<K, V> {
+
+    private final Map<K, V> map;
+
+    public LruCache(final int capacity) {
+        this.map = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public synchronized void clear() {
+        map.clear();
+    }
+
+    public synchronized V get(K key) {
+        return map.get(key);
+    }
+
+    public synchronized void put(K key, V value) {
+        map.put(key, value);
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+}
@@ -58,6 +58,13 @@ public class MagickImage implements Cloneable {
     // Just for internal use.
     }
 
+    /**
+     * Wraps the image as it is, without erasing it.
+     */
+    MagickImage(BufferedImage image) {
+        this.image = image;
+    }
+
     public MagickImage(File file) {
         try {
             readImage(file);
@@ -0,0 +1,245 @@
+package magick4j;
+
+/**
+ * Splits MVG text into words, strings and numbers in a single pass. MVG isn't
+ * line based, so whitespace and commas of any kind separate tokens, and numbers
+ * are read straight from the characters instead of from substrings.
+ */
+public class MvgTokenizer {
+
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /** Largest mantissa that a double holds exactly. */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == ',' || Character.isWhitespace(c);
+    }
+
+    private final int length;
+    private int position;
+    private final CharSequence text;
+
+    public MvgTokenizer(CharSequence text) {
+        this.text = text;
+        this.length = text.length();
+        this.position = 0;
+    }
+
+    /**
+     * Skips the given character if it is the next one, without skipping any
+     * separators first. Handy for suffixes such as the '%' in "30%".
+     */
+    public boolean consume(char c) {
+        if (position < length && text.charAt(position) == c) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private RuntimeException error(String expected) {
+        return new RuntimeException("expected " + expected + " at offset " + position + " of the drawing primitives");
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public boolean hasNext() {
+        skipSeparators();
+        return position < length;
+    }
+
+    /**
+     * Tells whether the next token looks like a number. Useful for primitives
+     * that take any amount of points.
+     */
+    public boolean hasNumber() {
+        skipSeparators();
+        if (position >= length) {
+            return false;
+        }
+        char c = text.charAt(position);
+        if (c == '-' || c == '+' || c == '.') {
+            return position + 1 < length && (isDigit(text.charAt(position + 1)) || text.charAt(position + 1) == '.');
+        }
+        return isDigit(c);
+    }
+
+    /**
+     * Reads a number. A number ends at the first character that can't continue
+     * it, so "10-5.5.5" reads as 10, -5.5 and .5.
+     */
+    public double nextDouble() {
+        skipSeparators();
+        int start = position;
+        boolean negative = false;
+        if (position < length && (text.charAt(position) == '-' || text.charAt(position) == '+')) {
+            negative = text.charAt(position) == '-';
+            position++;
+        }
+
+        long mantissa = 0;
+        int significant = 0;
+        int exponent = 0;
+        boolean digits = false;
+        boolean exact = true;
+        char c;
+
+        while (position < length && isDigit(c = text.charAt(position))) {
+            digits = true;
+            if (significant < 18) {
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0) {
+                    significant++;
+                }
+            } else {
+                exponent++;
+                exact = false;
+            }
+            position++;
+        }
+        if (position < length && text.charAt(position) == '.') {
+            position++;
+            while (position < length && isDigit(c = text.charAt(position))) {
+                digits = true;
+                if (significant < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (mantissa != 0) {
+                        significant++;
+                    }
+                    exponent--;
+                } else {
+                    exact = false;
+                }
+                position++;
+            }
+        }
+        if (!digits) {
+            position = start;
+            throw error("a number");
+        }
+        if (position < length && (text.charAt(position) == 'e' || text.charAt(position) == 'E')) {
+            int mark = position++;
+            boolean negativeExponent = false;
+            if (position < length && (text.charAt(position) == '-' || text.charAt(position) == '+')) {
+                negativeExponent = text.charAt(position) == '-';
+                position++;
+            }
+            if (position < length && isDigit(text.charAt(position))) {
+                int value = 0;
+                while (position < length && isDigit(c = text.charAt(position))) {
+                    if (value < 100000) {
+                        value = value * 10 + (c - '0');
+                    }
+                    position++;
+                }
+                exponent += negativeExponent ? -value : value;
+            } else {
+                // Not an exponent after all, maybe an "e" path command.
+                position = mark;
+            }
+        }
+
+        double value;
+        if (mantissa == 0) {
+            value = 0;
+        } else if (exact && mantissa < MAX_EXACT_MANTISSA && exponent >= -22 && exponent <= 22) {
+            // Both operands are exact, so a single rounding gives the correctly rounded result.
+            value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+        } else {
+            return Double.parseDouble(text.subSequence(start, position).toString());
+        }
+        return negative ? -value : value;
+    }
+
+    public float nextFloat() {
+        return (float) nextDouble();
+    }
+
+    public int nextInt() {
+        return (int) nextDouble();
+    }
+
+    /**
+     * Reads a keyword, a name or a quoted string. Quotes are removed. Strings
+     * may also be in braces, escaping any closing brace inside with a
+     * backslash. Unquoted words may contain parentheses with separators
+     * inside, as in "rgb(1, 2, 3)".
+     */
+    public String nextString() {
+        skipSeparators();
+        if (position >= length) {
+            throw error("a word");
+        }
+        char quote = text.charAt(position);
+        if (quote == '{') {
+            StringBuilder result = new StringBuilder();
+            for (position++; position < length && text.charAt(position) != '}'; position++) {
+                if (text.charAt(position) == '\\' && position + 1 < length && text.charAt(position + 1) == '}') {
+                    position++;
+                }
+                result.append(text.charAt(position));
+            }
+            if (position >= length) {
+                throw error("a closing }");
+            }
+            position++;
+            return result.toString();
+        }
+        if (quote == '\'' || quote == '"') {
+            int start = ++position;
+            while (position < length && text.charAt(position) != quote) {
+                position++;
+            }
+            if (position >= length) {
+                throw error("a closing " + quote);
+            }
+            return text.subSequence(start, position++).toString();
+        }
+        int start = position;
+        int depth = 0;
+        while (position < length) {
+            char c = text.charAt(position);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (depth <= 0 && isSeparator(c)) {
+                break;
+            }
+            position++;
+        }
+        return text.subSequence(start, position).toString();
+    }
+
+    /**
+     * Returns the next character without consuming it, or 0 at the end.
+     */
+    public char peek() {
+        return position < length ? text.charAt(position) : 0;
+    }
+
+    /**
+     * Skips to the start of the next line. MVG uses this for '#' comments.
+     */
+    public void skipLine() {
+        while (position < length && text.charAt(position) != '\n' && text.charAt(position) != '\r') {
+            position++;
+        }
+    }
+
+    public void skipSeparators() {
+        while (position < length && isSeparator(text.charAt(position))) {
+            position++;
+        }
+    }
+}
@@ -1,5 +1,5 @@
 package magick4j;
 
 public interface ParserBuilder {
-    Command build(String... parts);
+    Command build(CommandParser parser, MvgTokenizer tokens);
 }
@@ -6,485 +6,292 @@
 package magick4j;
 
 import com.kitfox.svg.pathcmd.Arc;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Arc2D;
 import java.awt.geom.GeneralPath;
-import java.awt.geom.Point2D;
-import java.util.HashMap;
-import java.util.Map;
+import java.awt.geom.PathIterator;
 
 /**
+ * Parses the data of one path primitive. The data is scanned once: numbers
+ * are read in place by the tokenizer (so packed data such as "10-5.5.5" works),
+ * a command letter may be followed by any number of argument groups, and the
+ * resulting segments go to primitive buffers that become a GeneralPath at the
+ * end. It keeps its state in fields while it works, so use a new instance for
+ * every path.
  *
  * @author serabe
  */
 public class PathParser implements ParserBuilder{
 
-    private Point2D currentPoint;
-    private Point2D lastControlPointC = null;
-    private Point2D lastControlPointQ = null;
-    private GeneralPath path;
-    private String[] params;
-    
-    private interface PathCommand{
-        public void perform(PathParser parser);
-    }
-    
-    private static final Map<String, PathCommand> COMMANDS = buildCommands();
-    
-    private static Map<String, PathCommand> buildCommands(){
-        Map<String,PathCommand> commands = new HashMap<String,PathCommand>();
-        
-        commands.put("A", new PathCommand(){
-            public void perform(PathParser parser){
-                for(int i = 1; parser.getParams().length - i >= 7; i+= 7){
-                    double xRadius = Math.abs(Double.parseDouble(parser.getParams()[i]));
-                    double yRadius = Math.abs(Double.parseDouble(parser.getParams()[i+1]));
-                    double rotation = Double.parseDouble(parser.getParams()[i+2]);
-                    boolean largeArcFlag = Double.parseDouble(parser.getParams()[i+3]) != 0;
-                    boolean sweepFlag = Double.parseDouble(parser.getParams()[i+4]) != 0;
-                    double x1 = parser.getCurrentPoint().getX();
-                    double y1 = parser.getCurrentPoint().getY();
-                    parser.getCurrentPoint().setLocation(   Double.parseDouble(parser.getParams()[i+5]),
-                                                            Double.parseDouble(parser.getParams()[i+6]));
-
-                    (new Arc()).arcTo(  parser.getPath(),
-                                        (float) xRadius, (float) yRadius,
-                                        (float) rotation,
-                                        largeArcFlag, sweepFlag,
-                                        (float) parser.getCurrentPoint().getX(), (float) parser.getCurrentPoint().getY(),
-                                        (float) x1, (float) y1);
-                }
-
-                parser.setLastControlPointC(null);
-                parser.setLastControlPointQ(null);
-            }
-        });
-        
-        commands.put("a", new PathCommand(){
-            public void perform(PathParser parser){
-                for(int i = 1; parser.getParams().length - i >= 7; i+= 7){
-                    double xRadius = Math.abs(Double.parseDouble(parser.getParams()[i]));
-                    double yRadius = Math.abs(Double.parseDouble(parser.getParams()[i+1]));
-                    double rotation = Double.parseDouble(parser.getParams()[i+2]);
-                    boolean largeArcFlag = Double.parseDouble(parser.getParams()[i+3]) != 0;
-                    boolean sweepFlag = Double.parseDouble(parser.getParams()[i+4]) != 0;
-                    double x1 = parser.getCurrentPoint().getX();
-                    double y1 = parser.getCurrentPoint().getY();
-                    parser.getCurrentPoint().setLocation(   parser.getCurrentPoint().getX() + Double.parseDouble(parser.getParams()[i+5]),
-                                                            parser.getCurrentPoint().getY() + Double.parseDouble(parser.getParams()[i+6]));
-
-                    (new Arc()).arcTo(  parser.getPath(),
-                                        (float) xRadius, (float) yRadius,
-                                        (float) rotation,
-                                        largeArcFlag, sweepFlag,
-                                        (float) parser.getCurrentPoint().getX(), (float) parser.getCurrentPoint().getY(),
-                                        (float) x1, (float) y1);
-                }
-
-                parser.setLastControlPointC(null);
-                parser.setLastControlPointQ(null);
-            }
-        });
-        
-        commands.put("C", new PathCommand(){
-            public void perform(PathParser parser){
-                for(int i = 1; parser.getParams().length - i >= 6; i+=6){
-
-                    // First control point
-                    float ctrlx1 = (float) (Double.parseDouble(parser.getParams()[i]));
-                    float ctrly1 = (float) (Double.parseDouble(parser.getParams()[i+1]));
-
-                    // Second control point
-                    parser.setLastControlPointC(new Point2D.Double( Double.parseDouble(parser.getParams()[i+2]),
-                                                                    Double.parseDouble(parser.getParams()[i+3])));
-                    // End point becomes the current point.
-                    parser.getCurrentPoint().setLocation(   Double.parseDouble(parser.getParams()[i+4]),
-                                                            Double.parseDouble(parser.getParams()[i+5]));
-
-                    parser.getPath().curveTo(   ctrlx1, ctrly1,
-                                                (float) parser.getLastControlPointC().getX(), (float) parser.getLastControlPointC().getY(),
-                                                (float) parser.getCurrentPoint().getX(), (float) parser.getCurrentPoint().getY());
-                }
-
-                parser.setLastControlPointQ(null);
-            }
-        });
-        
-        commands.put("c", new PathCommand(){
-            public void perform(PathParser parser){
-                for(int i = 1; parser.getParams().length - i >= 6; i+=6){
-
-                    // First control point
-                    float ctrlx1 = (float) (parser.getCurrentPoint().getX() + Double.parseDouble(parser.getParams()[i]));
-                    float ctrly1 = (float) (parser.getCurrentPoint().getY() + Double.parseDouble(parser.getParams()[i+1]));
-
-                    // Second control point
-                    parser.setLastControlPointC(new Point2D.Double( parser.getCurrentPoint().getX() + Double.parseDouble(parser.getParams()[i+2]),
-                                                                    parser.getCurrentPoint().getY() + Double.parseDouble(parser.getParams()[i+3])));
-                    // End point becomes the current point.
-                    parser.getCurrentPoint().setLocation(   parser.getCurrentPoint().getX() + Double.parseDouble(parser.getParams()[i+4]),
-                                                            parser.getCurrentPoint().getY() + Double.parseDouble(parser.getParams()[i+5]));
-
-                    parser.getPath().curveTo(   ctrlx1, ctrly1,
-                                    (float) parser.getLastControlPointC().getX(), (float) parser.getLastControlPointC().getY(),
-                                    (float) parser.getCurrentPoint().getX(), (float) parser.getCurrentPoint().getY());
-                }
-
-                parser.setLastControlPointQ(null);
-            }
-        });
-        
-        commands.put("H", new PathCommand(){
-            public void perform(PathParser parser){
-                for(int i = 1; parser.getParams().length - i > 0; i++){
-                    parser.getCurrentPoint().setLocation(Double.parseDouble(parser.getParams()[i]), parser.getCurrentPoint().getY());
-                    parser.getPath().lineTo((float) parser.getCurrentPoint().getX(), (float) parser.getCurrentPoint().getY());
-                }
-
-                parser.setLastControlPointC(null);
-                parser.setLastControlPointQ(null);
-            }
-        });
-        
-        commands.put("h", new PathCommand(){
-            public void perform(PathParser parser){
-                for(int i = 1; parser.getParams().length - i > 0; i++){
-                    parser.getCurrentPoint().setLocation(   parser.getCurrentPoint().getX() + Double.parseDouble(parser.getParams()[i]),
-                                                            parser.getCurrentPoint().getY());
-                    parser.getPath().lineTo((float) parser.getCurrentPoint().getX(), (float) parser.getCurrentPoint().getY());
-                }
-
-                parser.setLastControlPointC(null);
-                parser.setLastControlPointQ(null);
-            }
-        });
-        
-        commands.put("L", new PathCommand(){
-            public void perform(PathParser parser){
-                for(int i = 1; parser.getParams().length - i >= 2; i+=2){
-                    parser.getCurrentPoint().setLocation(Double.parseDouble(parser.getParams()[i]), Double.parseDouble(parser.getParams()[i+1]));
-                    parser.getPath().lineTo((float) parser.getCurrentPoint().getX(), (float) parser.getCurrentPoint().getY());
-                }
-
-                parser.setLastControlPointC(null);
-                parser.setLastControlPointQ(null);
-            }
-        });
-        
-        commands.put("l", new PathCommand(){
-            public void perform(PathParser parser){
-                for(int i = 1; parser.getParams().length - i >= 2; i+=2){
-                    parser.getCurrentPoint().setLocation(  parser.getCurrentPoint().getX()+Double.parseDouble(parser.getParams()[i]),
-                                                    parser.getCurrentPoint().getY()+Double.parseDouble(parser.getParams()[i+1]));
-                    parser.getPath().lineTo((float) parser.getCurrentPoint().getX(), (float) parser.getCurrentPoint().getY());
-                }
-
-                parser.setLastControlPointC(null);
-                parser.setLastControlPointQ(null);
-            }
-        });
-        
-        commands.put("M", new PathCommand(){
-            public void perform(PathParser parser){
-                for(int i = 1; parser.getParams().length - i >= 2; i+=2){
-                    parser.getCurrentPoint().setLocation(Double.parseDouble(parser.getParams()[i]), Double.parseDouble(parser.getParams()[i+1]));
-                    if(i==1){
-                        parser.getPath().moveTo((float) parser.getCurrentPoint().getX(), (float) parser.getCurrentPoint().getY());
-                    } else {
-                        parser.getPath().lineTo((float) parser.getCurrentPoint().getX(), (float) parser.getCurrentPoint().getY());
-                    }
-                }
-
-                parser.setLastControlPointC(null);
-                parser.setLastControlPointQ(null);
-            }
-        });
-        
-        commands.put("m", new PathCommand(){
-            public void perform(PathParser parser){
-                for(int i = 1; parser.getParams().length - i >= 2; i+=2){
-                    parser.getCurrentPoint().setLocation(   parser.getCurrentPoint().getX()+Double.parseDouble(parser.getParams()[i]),
-                                                            parser.getCurrentPoint().getY()+Double.parseDouble(parser.getParams()[i+1]));
-                    if(i==1){
-                        parser.getPath().moveTo((float) parser.getCurrentPoint().getX(), (float) parser.getCurrentPoint().getY());
-                    } else {
-                        parser.getPath().lineTo((float) parser.getCurrentPoint().getX(), (float) parser.getCurrentPoint().getY());
-                    }
-                }
-
-                parser.setLastControlPointC(null);
-                parser.setLastControlPointQ(null);
-            }
-        });
-        
-        commands.put("Q", new PathCommand(){
-            public void perform(PathParser parser){
-                for(int i = 1; parser.getParams().length - i >= 4; i+=4){
-
-                    // Control point.
-                    parser.setLastControlPointQ(new Point2D.Double( Double.parseDouble(parser.getParams()[i]),
-                                                                    Double.parseDouble(parser.getParams()[i+1])));
-
-                    // End point.
-                    parser.getCurrentPoint().setLocation(  Double.parseDouble(parser.getParams()[i+2]),
-                                                    Double.parseDouble(parser.getParams()[i+3]));
-
-                    parser.getPath().quadTo(    (float) parser.getLastControlPointQ().getX(), (float) parser.getLastControlPointQ().getY(),
-                                                (float) parser.getCurrentPoint().getX(), (float) parser.getCurrentPoint().getY());
-                }
-                parser.setLastControlPointC(null);       
-            }
-        });
-        
-        commands.put("q", new PathCommand(){
-            public void perform(PathParser parser){
-                for(int i = 1; parser.getParams().length - i >= 4; i+=4){
-
-                    // Control point.
-                    parser.setLastControlPointQ(new Point2D.Double( parser.getCurrentPoint().getX() + Double.parseDouble(parser.getParams()[i]),
-                                                                    parser.getCurrentPoint().getY() + Double.parseDouble(parser.getParams()[i+1])));
-
-                    // End point.
-                    parser.getCurrentPoint().setLocation(   parser.getCurrentPoint().getX() + Double.parseDouble(parser.getParams()[i+2]),
-                                                            parser.getCurrentPoint().getY() + Double.parseDouble(parser.getParams()[i+3]));
-
-                    parser.getPath().quadTo((float) parser.getLastControlPointQ().getX(), (float) parser.getLastControlPointQ().getY(),
-                                            (float) parser.getCurrentPoint().getX(), (float) parser.getCurrentPoint().getY());
+    private final AffineTransform arcRotation = new AffineTransform();
+    private final double[] arcSegment = new double[6];
+    private float[] coords = new float[64];
+    private int coordCount = 0;
+    private double currentX = 0;
+    private double currentY = 0;
+    private boolean hasControlPointC = false;
+    private boolean hasControlPointQ = false;
+    private double lastControlX;
+    private double lastControlY;
+    private double startX = 0;
+    private double startY = 0;
+    private int typeCount = 0;
+    private byte[] types = new byte[32];
+
+    /**
+     * Appends an SVG arc the way SVG Salamander's Arc.arcTo adds it to a
+     * GeneralPath, coordinates rounded the same, but without going through a
+     * path of its own.
+     */
+    private void appendArc(double xRadius, double yRadius, double rotation, boolean largeArcFlag, boolean sweepFlag, double x, double y) {
+        float fromX = (float) currentX, fromY = (float) currentY, toX = (float) x, toY = (float) y;
+        currentX = x;
+        currentY = y;
+        if ((float) xRadius == 0 || (float) yRadius == 0) {
+            segment(PathIterator.SEG_LINETO, 2);
+            coords[coordCount++] = toX;
+            coords[coordCount++] = toY;
+            return;
+        }
+        if (fromX == toX && fromY == toY) {
+            return;
+        }
+        Arc2D arc = Arc.computeArc(fromX, fromY, (float) xRadius, (float) yRadius, (float) rotation, largeArcFlag, sweepFlag, toX, toY);
+        if (arc == null) {
+            return;
+        }
+        arcRotation.setToRotation(Math.toRadians((float) rotation), arc.getCenterX(), arc.getCenterY());
+        PathIterator iterator = arc.getPathIterator(arcRotation);
+        for (boolean first = true; !iterator.isDone(); iterator.next(), first = false) {
+            int type = iterator.currentSegment(arcSegment);
+            if (first) {
+                // The arc starts with a move, which joins the path as a line unless it stays put.
+                if ((float) arcSegment[0] == fromX && (float) arcSegment[1] == fromY) {
+                    continue;
                 }
-                parser.setLastControlPointC(null);
+                type = PathIterator.SEG_LINETO;
             }
-        });
-        
-        commands.put("S", new PathCommand(){
-            public void perform(PathParser parser){
-                for(int i = 1; parser.getParams().length - i >= 4; i+=4){
-
-                    // First control point
-                    if(parser.getLastControlPointC() == null){
-                        parser.setLastControlPointC(parser.getCurrentPoint());
-                    }
-                    float ctrlx1 = (float)(2*parser.getCurrentPoint().getX() - parser.getLastControlPointC().getX());
-                    float ctrly1 = (float)(2*parser.getCurrentPoint().getY() - parser.getLastControlPointC().getY());
-
-                    // Second control 
-                    parser.setLastControlPointC(new Point2D.Double( Double.parseDouble(parser.getParams()[i]),
-                                                                    Double.parseDouble(parser.getParams()[i+1])));
-
-                    // End point becomes the current point.
-                    parser.getCurrentPoint().setLocation(Double.parseDouble(parser.getParams()[i+2]), Double.parseDouble(parser.getParams()[i+3]));
-
-                    parser.getPath().curveTo(  ctrlx1, ctrly1,
-                                        (float) parser.getLastControlPointC().getX(), (float) parser.getLastControlPointC().getY(),
-                                        (float) parser.getCurrentPoint().getX(), (float) parser.getCurrentPoint().getY());
-                }
-                
-                parser.setLastControlPointQ(null);
+            int count = type == PathIterator.SEG_CUBICTO ? 6 : type == PathIterator.SEG_QUADTO ? 4 : type == PathIterator.SEG_CLOSE ? 0 : 2;
+            segment(type, count);
+            for (int s = 0; s < count; s++) {
+                coords[coordCount++] = (float) arcSegment[s];
             }
-        });
-        
-        commands.put("s", new PathCommand(){
-            public void perform(PathParser parser){
-                for(int i = 1; parser.getParams().length - i >= 4; i+=4){
-
-                    // First control point
-                    if(parser.getLastControlPointC() == null){
-                        parser.setLastControlPointC(parser.getCurrentPoint());
-                    }
-                    float ctrlx1 = (float)(2*parser.getCurrentPoint().getX() - parser.getLastControlPointC().getX());
-                    float ctrly1 = (float)(2*parser.getCurrentPoint().getY() - parser.getLastControlPointC().getY());
+        }
+    }
 
-                    // Second control point
-                    parser.setLastControlPointC(new Point2D.Double( parser.getCurrentPoint().getX() + Double.parseDouble(parser.getParams()[i]),
-                                                                    parser.getCurrentPoint().getY() + Double.parseDouble(parser.getParams()[i+1])));
+    public Command build(CommandParser parser, MvgTokenizer tokens) {
+        return parser.getCurrentBuilder().shape(parse(tokens.nextString()));
+    }
 
-                    // End point becomes the current point.
-                    parser.getCurrentPoint().setLocation(   parser.getCurrentPoint().getX() + Double.parseDouble(parser.getParams()[i+2]),
-                                                            parser.getCurrentPoint().getY() + Double.parseDouble(parser.getParams()[i+3]));
+    private void curveTo(double x1, double y1, double x2, double y2, double x, double y) {
+        segment(PathIterator.SEG_CUBICTO, 6);
+        coords[coordCount++] = (float) x1;
+        coords[coordCount++] = (float) y1;
+        coords[coordCount++] = (float) x2;
+        coords[coordCount++] = (float) y2;
+        coords[coordCount++] = (float) x;
+        coords[coordCount++] = (float) y;
+        lastControlX = x2;
+        lastControlY = y2;
+        hasControlPointC = true;
+        hasControlPointQ = false;
+        currentX = x;
+        currentY = y;
+    }
 
-                    parser.getPath().curveTo(   ctrlx1, ctrly1,
-                                                (float) parser.getLastControlPointC().getX(), (float) parser.getLastControlPointC().getY(),
-                                                (float) parser.getCurrentPoint().getX(), (float) parser.getCurrentPoint().getY());
-                }
-                
-                parser.setLastControlPointQ(null);
-            }
-        });
-        
-        commands.put("T", new PathCommand(){
-            public void perform(PathParser parser){
-                for(int i = 1; parser.getParams().length - i >= 2; i+=2){
+    private void lineTo(double x, double y) {
+        segment(PathIterator.SEG_LINETO, 2);
+        coords[coordCount++] = (float) x;
+        coords[coordCount++] = (float) y;
+        hasControlPointC = false;
+        hasControlPointQ = false;
+        currentX = x;
+        currentY = y;
+    }
 
-                    // First control point
-                    if(parser.getLastControlPointQ() == null){
-                        parser.setLastControlPointQ(parser.getCurrentPoint());
-                    }
-                    
-                    parser.getLastControlPointQ().setLocation(  2*parser.getCurrentPoint().getX() - parser.getLastControlPointQ().getX(),
-                                                                2*parser.getCurrentPoint().getY() - parser.getLastControlPointQ().getY());
+    private void moveTo(double x, double y) {
+        segment(PathIterator.SEG_MOVETO, 2);
+        coords[coordCount++] = (float) x;
+        coords[coordCount++] = (float) y;
+        hasControlPointC = false;
+        hasControlPointQ = false;
+        currentX = startX = x;
+        currentY = startY = y;
+    }
 
-                    // End point becomes the current point.
-                    parser.getCurrentPoint().setLocation(Double.parseDouble(parser.getParams()[i]), Double.parseDouble(parser.getParams()[i+1]));
+    /**
+     * Parses SVG path data like "M10,10 l50,50 z".
+     */
+    public GeneralPath parse(CharSequence data) {
+        MvgTokenizer tokens = new MvgTokenizer(data);
 
-                    parser.getPath().quadTo(    (float) parser.getLastControlPointQ().getX(), (float) parser.getLastControlPointQ().getY(),
-                                                (float) parser.getCurrentPoint().getX(), (float) parser.getCurrentPoint().getY());
-                }
-                
-                parser.setLastControlPointC(null);
+        while (tokens.hasNext()) {
+            char command = tokens.peek();
+            if (!Character.isLetter(command)) {
+                throw new RuntimeException("attribute not recognized: " + command);
             }
-        });
-        
-        commands.put("t", new PathCommand(){
-            public void perform(PathParser parser){
-                for(int i = 1; parser.getParams().length - i >= 2; i+=2){
-
-                    // First control point
-                    if(parser.getLastControlPointQ() == null){
-                        parser.setLastControlPointQ(parser.getCurrentPoint());
+            tokens.consume(command);
+            boolean relative = Character.isLowerCase(command);
+
+            switch (Character.toUpperCase(command)) {
+                case 'A':
+                    do {
+                        double xRadius = Math.abs(tokens.nextDouble());
+                        double yRadius = Math.abs(tokens.nextDouble());
+                        double rotation = tokens.nextDouble();
+                        boolean largeArcFlag = tokens.nextDouble() != 0;
+                        boolean sweepFlag = tokens.nextDouble() != 0;
+                        double x = x(tokens.nextDouble(), relative);
+                        double y = y(tokens.nextDouble(), relative);
+                        appendArc(xRadius, yRadius, rotation, largeArcFlag, sweepFlag, x, y);
+                    } while (tokens.hasNumber());
+                    hasControlPointC = false;
+                    hasControlPointQ = false;
+                    break;
+                case 'C':
+                    do {
+                        double x1 = x(tokens.nextDouble(), relative);
+                        double y1 = y(tokens.nextDouble(), relative);
+                        double x2 = x(tokens.nextDouble(), relative);
+                        double y2 = y(tokens.nextDouble(), relative);
+                        double x = x(tokens.nextDouble(), relative);
+                        double y = y(tokens.nextDouble(), relative);
+                        curveTo(x1, y1, x2, y2, x, y);
+                    } while (tokens.hasNumber());
+                    break;
+                case 'H':
+                    do {
+                        lineTo(x(tokens.nextDouble(), relative), currentY);
+                    } while (tokens.hasNumber());
+                    break;
+                case 'L':
+                    do {
+                        double x = x(tokens.nextDouble(), relative);
+                        lineTo(x, y(tokens.nextDouble(), relative));
+                    } while (tokens.hasNumber());
+                    break;
+                case 'M':
+                    double moveX = x(tokens.nextDouble(), relative);
+                    moveTo(moveX, y(tokens.nextDouble(), relative));
+                    // Further pairs are implicit line commands.
+                    while (tokens.hasNumber()) {
+                        double x = x(tokens.nextDouble(), relative);
+                        lineTo(x, y(tokens.nextDouble(), relative));
                     }
-                    
-                    parser.getLastControlPointQ().setLocation(  2*parser.getCurrentPoint().getX() - parser.getLastControlPointQ().getX(),
-                                                                2*parser.getCurrentPoint().getY() - parser.getLastControlPointQ().getY());
-
-                    // End point becomes the current point.
-                    parser.getCurrentPoint().setLocation(   parser.getCurrentPoint().getX() + Double.parseDouble(parser.getParams()[i]),
-                                                            parser.getCurrentPoint().getY() + Double.parseDouble(parser.getParams()[i+1]));
-
-                    parser.getPath().quadTo(    (float) parser.getLastControlPointQ().getX(), (float) parser.getLastControlPointQ().getY(),
-                                                (float) parser.getCurrentPoint().getX(), (float) parser.getCurrentPoint().getY());
-                }
-                
-                parser.setLastControlPointC(null);
+                    break;
+                case 'Q':
+                    do {
+                        double x1 = x(tokens.nextDouble(), relative);
+                        double y1 = y(tokens.nextDouble(), relative);
+                        double x = x(tokens.nextDouble(), relative);
+                        quadTo(x1, y1, x, y(tokens.nextDouble(), relative));
+                    } while (tokens.hasNumber());
+                    break;
+                case 'S':
+                    do {
+                        // The first control point reflects the last one, if any.
+                        double x1 = hasControlPointC ? 2 * currentX - lastControlX : currentX;
+                        double y1 = hasControlPointC ? 2 * currentY - lastControlY : currentY;
+                        double x2 = x(tokens.nextDouble(), relative);
+                        double y2 = y(tokens.nextDouble(), relative);
+                        double x = x(tokens.nextDouble(), relative);
+                        curveTo(x1, y1, x2, y2, x, y(tokens.nextDouble(), relative));
+                    } while (tokens.hasNumber());
+                    break;
+                case 'T':
+                    do {
+                        double x1 = hasControlPointQ ? 2 * currentX - lastControlX : currentX;
+                        double y1 = hasControlPointQ ? 2 * currentY - lastControlY : currentY;
+                        double x = x(tokens.nextDouble(), relative);
+                        quadTo(x1, y1, x, y(tokens.nextDouble(), relative));
+                    } while (tokens.hasNumber());
+                    break;
+                case 'V':
+                    do {
+                        lineTo(currentX, y(tokens.nextDouble(), relative));
+                    } while (tokens.hasNumber());
+                    break;
+                case 'Z':
+                    segment(PathIterator.SEG_CLOSE, 0);
+                    hasControlPointC = false;
+                    hasControlPointQ = false;
+                    currentX = startX;
+                    currentY = startY;
+                    break;
+                default:
+                    throw new RuntimeException("attribute not recognized: " + command);
             }
-        });
-        
-        commands.put("V", new PathCommand(){
-            public void perform(PathParser parser){
-                for(int i = 1; parser.getParams().length - i > 0; i++){
-                    parser.getCurrentPoint().setLocation(parser.getCurrentPoint().getX(), Double.parseDouble(parser.getParams()[i]));
-                    parser.getPath().lineTo((float) parser.getCurrentPoint().getX(), (float) parser.getCurrentPoint().getY());
-                }
+        }
 
-                parser.setLastControlPointC(null);
-                parser.setLastControlPointQ(null);
-            }
-        });
-        
-        commands.put("v", new PathCommand(){
-            public void perform(PathParser parser){
-                for(int i = 1; parser.getParams().length - i > 0; i++){
-                    parser.getCurrentPoint().setLocation(   parser.getCurrentPoint().getX(),
-                                                            parser.getCurrentPoint().getY() + Double.parseDouble(parser.getParams()[i]));
-                    parser.getPath().lineTo((float) parser.getCurrentPoint().getX(), (float) parser.getCurrentPoint().getY());
-                }
+        return toPath();
+    }
 
-                parser.setLastControlPointC(null);
-                parser.setLastControlPointQ(null);
-            }
-        });
-        
-        commands.put("Z", new PathCommand(){
-            public void perform(PathParser parser){
-                parser.getPath().closePath();
-                parser.setLastControlPointC(null);
-                parser.setLastControlPointQ(null);
-            }
-        });
-        
-        commands.put("z", new PathCommand(){
-            public void perform(PathParser parser){
-                parser.getPath().closePath();
-                parser.setLastControlPointC(null);
-                parser.setLastControlPointQ(null);
-            }
-        });
-        
-        return commands;
+    private void quadTo(double x1, double y1, double x, double y) {
+        segment(PathIterator.SEG_QUADTO, 4);
+        coords[coordCount++] = (float) x1;
+        coords[coordCount++] = (float) y1;
+        coords[coordCount++] = (float) x;
+        coords[coordCount++] = (float) y;
+        lastControlX = x1;
+        lastControlY = y1;
+        hasControlPointC = false;
+        hasControlPointQ = true;
+        currentX = x;
+        currentY = y;
     }
-    
-    public Command build(String... parts) {
-        String commandLine = "";
 
-        // Join the parts.
-        for(int i=1; i<parts.length; i++){
-            commandLine += parts[i] + " ";
+    /**
+     * Records the segment type and makes room for its coordinates, which the
+     * caller appends.
+     */
+    private void segment(int type, int coordinates) {
+        if (typeCount == types.length) {
+            byte[] grown = new byte[2 * types.length];
+            System.arraycopy(types, 0, grown, 0, typeCount);
+            types = grown;
         }
+        if (coordCount + coordinates > coords.length) {
+            float[] grown = new float[2 * coords.length];
+            System.arraycopy(coords, 0, grown, 0, coordCount);
+            coords = grown;
+        }
+        types[typeCount++] = (byte) type;
+    }
 
-        commandLine = commandLine.replaceAll("'", "");
-        commandLine = commandLine.replaceAll(",", " "); // RMagick4J must be capable of recognize both comma separated values and blank space separated values.
-        commandLine = commandLine.trim();
-
-        String currentCommand = "";
-        this.currentPoint = new Point2D.Double(0,0);
-        this.path = new GeneralPath();
-        this.path.setWindingRule(GeneralPath.WIND_EVEN_ODD);
-
-        while(!commandLine.equals("")){
-
-            // Get the current command.
-            int i = 0;
-            for(i=1; i<commandLine.length(); i++){
-                if(Character.isLetter(commandLine.charAt(i))){
+    private GeneralPath toPath() {
+        GeneralPath path = new GeneralPath(GeneralPath.WIND_EVEN_ODD, Math.max(typeCount, 1));
+        int c = 0;
+        for (int t = 0; t < typeCount; t++) {
+            switch (types[t]) {
+                case PathIterator.SEG_MOVETO:
+                    path.moveTo(coords[c], coords[c + 1]);
+                    c += 2;
+                    break;
+                case PathIterator.SEG_LINETO:
+                    path.lineTo(coords[c], coords[c + 1]);
+                    c += 2;
+                    break;
+                case PathIterator.SEG_QUADTO:
+                    path.quadTo(coords[c], coords[c + 1], coords[c + 2], coords[c + 3]);
+                    c += 4;
+                    break;
+                case PathIterator.SEG_CUBICTO:
+                    path.curveTo(coords[c], coords[c + 1], coords[c + 2], coords[c + 3], coords[c + 4], coords[c + 5]);
+                    c += 6;
+                    break;
+                case PathIterator.SEG_CLOSE:
+                    path.closePath();
                     break;
-                }
-            }
-
-            currentCommand = commandLine.substring(0, i);
-            commandLine = commandLine.substring(i);
-
-            if(currentCommand.length() > 1 && currentCommand.charAt(1) != ' '){
-                currentCommand =    currentCommand.substring(0,1)+
-                                    " "+
-                                    currentCommand.substring(1);
-            }
-            
-            this.setParams(currentCommand.split("[ ]+"));
-
-            PathCommand command = COMMANDS.get(params[0]);
-            if(command == null && !Character.isSpaceChar(params[0].charAt(0))){
-                throw new RuntimeException("attribute not recognized: "+params[0].charAt(0));
-            }else{
-                command.perform(this);
             }
-
         }
-        return CommandParser.getCurrentBuilder().shape(path);
-    }
-    
-    public Point2D getCurrentPoint(){
-        return this.currentPoint;
-    }
-    
-    public Point2D getLastControlPointC(){
-        return this.lastControlPointC;
-    }
-    
-    public Point2D getLastControlPointQ(){
-        return this.lastControlPointQ;
+        return path;
     }
-    
-    public String[] getParams(){
-        return this.params;
-    }
-    
-    public GeneralPath getPath(){
-        return this.path;
-    }
-    
-    public void setCurrentPoint(Point2D point){
-        this.currentPoint = point;
-    }
-    
-    public void setLastControlPointC(Point2D point){
-        this.lastControlPointC = point;
-    }
-    
-    public void setLastControlPointQ(Point2D point){
-        this.lastControlPointQ = point;
-    }
-    
-    public void setParams(String[] params){
-        this.params = params;
+
+    private double x(double value, boolean relative) {
+        return relative ? currentX + value : value;
     }
-    
-    public void setPath(GeneralPath path){
-        this.path = path;
+
+    private double y(double value, boolean relative) {
+        return relative ? currentY + value : value;
     }
 }
@@ -0,0 +1,151 @@
+package magick4j;
+
+import java.awt.Shape;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.PathIterator;
+
+/**
+ * Drops the vertices of a polyline path that stay within a tolerance of the
+ * simplified line, using Douglas-Peucker on each subpath. It is meant for
+ * device space, where a tolerance below a pixel leaves the rendering the same
+ * while a time series of hundreds of thousands of points shrinks to a few
+ * vertices per pixel column. Paths with curves are returned unchanged.
+ */
+class PathSimplifier {
+
+    private boolean[] keep = new boolean[256];
+    private int[] stack = new int[64];
+    private final double tolerance;
+    private double[] xs = new double[256];
+    private double[] ys = new double[256];
+
+    private PathSimplifier(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    public static Shape simplify(Shape shape, double tolerance) {
+        return new PathSimplifier(tolerance).simplify(shape);
+    }
+
+    /**
+     * Returns the squared distance from (x, y) to the segment from point a to
+     * point b.
+     */
+    private double distanceSquared(double x, double y, int a, int b) {
+        double dx = xs[b] - xs[a], dy = ys[b] - ys[a];
+        double length = dx * dx + dy * dy;
+        double t = length == 0 ? 0 : ((x - xs[a]) * dx + (y - ys[a]) * dy) / length;
+        t = Math.max(0, Math.min(1, t));
+        double ex = xs[a] + t * dx - x, ey = ys[a] + t * dy - y;
+        return ex * ex + ey * ey;
+    }
+
+    private void emit(GeneralPath path, int count, boolean closed) {
+        if (count == 0) {
+            return;
+        }
+        mark(count);
+        path.moveTo((float) xs[0], (float) ys[0]);
+        for (int p = 1; p < count; p++) {
+            if (keep[p]) {
+                path.lineTo((float) xs[p], (float) ys[p]);
+            }
+        }
+        if (closed) {
+            path.closePath();
+        }
+    }
+
+    /**
+     * Marks the points to keep, splitting at the farthest point of each span
+     * until every dropped point is within the tolerance. Uses its own stack,
+     * since a path may have hundreds of thousands of points.
+     */
+    private void mark(int count) {
+        for (int p = 0; p < count; p++) {
+            keep[p] = false;
+        }
+        keep[0] = keep[count - 1] = true;
+        double limit = tolerance * tolerance;
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = count - 1;
+        while (top > 0) {
+            int last = stack[--top], first = stack[--top];
+            int farthest = -1;
+            double maximum = limit;
+            for (int p = first + 1; p < last; p++) {
+                double distance = distanceSquared(xs[p], ys[p], first, last);
+                if (distance > maximum) {
+                    maximum = distance;
+                    farthest = p;
+                }
+            }
+            if (farthest >= 0) {
+                keep[farthest] = true;
+                if (top + 4 > stack.length) {
+                    int[] grown = new int[2 * stack.length];
+                    System.arraycopy(stack, 0, grown, 0, top);
+                    stack = grown;
+                }
+                stack[top++] = first;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = last;
+            }
+        }
+    }
+
+    private Shape simplify(Shape shape) {
+        PathIterator iterator = shape.getPathIterator(null);
+        GeneralPath path = new GeneralPath(iterator.getWindingRule());
+        double[] coords = new double[6];
+        int count = 0;
+        // True while the subpath is only the point that a close left behind.
+        boolean implicit = false;
+        for (; !iterator.isDone(); iterator.next()) {
+            switch (iterator.currentSegment(coords)) {
+                case PathIterator.SEG_MOVETO:
+                    if (!implicit) {
+                        emit(path, count, false);
+                    }
+                    count = store(0, coords[0], coords[1]);
+                    implicit = false;
+                    break;
+                case PathIterator.SEG_LINETO:
+                    count = store(count, coords[0], coords[1]);
+                    implicit = false;
+                    break;
+                case PathIterator.SEG_CLOSE:
+                    if (!implicit) {
+                        emit(path, count, true);
+                    }
+                    // A segment after a close starts from the same point.
+                    count = store(0, xs[0], ys[0]);
+                    implicit = true;
+                    break;
+                default:
+                    return shape;
+            }
+        }
+        if (!implicit) {
+            emit(path, count, false);
+        }
+        return path;
+    }
+
+    private int store(int count, double x, double y) {
+        if (count == xs.length) {
+            double[] grownXs = new double[2 * count];
+            double[] grownYs = new double[2 * count];
+            System.arraycopy(xs, 0, grownXs, 0, count);
+            System.arraycopy(ys, 0, grownYs, 0, count);
+            xs = grownXs;
+            ys = grownYs;
+            keep = new boolean[2 * count];
+        }
+        xs[count] = x;
+        ys[count] = y;
+        return count + 1;
+    }
+}
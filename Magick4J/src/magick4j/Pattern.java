@@ -6,16 +6,22 @@ public class Pattern {
     private MagickImage image;
     private int x;
     private int y;
+    private int width;
+    private int height;
     private String name;
     
     public Pattern(String name, int x, int y, int width, int height){
         this.name = name;
         this.x = x;
         this.y = y;
-        this.image = new MagickImage(width, height);
+        this.width = width;
+        this.height = height;
     }
     
     public MagickImage getImage(){
+        if(this.image == null){
+            this.image = new MagickImage(width, height);
+        }
         return this.image;
     }
     
@@ -30,4 +36,11 @@ public class Pattern {
     public int getY(){
         return this.y;
     }
+    
+    /**
+     * Returns a new pattern with the same definition and a blank image.
+     */
+    public Pattern instantiate(){
+        return new Pattern(name, x, y, width, height);
+    }
 }
@@ -16,10 +16,8 @@ import java.awt.Color;
 
 public class PixelPacket {
 
-    private int blue;
-    private int green;
-    private int opacity;
-    private int red;
+    private boolean frozen;
+    private ColorValue value;
 
     public PixelPacket() {
         this(0, 0, 0, 0);
@@ -30,67 +28,88 @@ public class PixelPacket {
     }
 
     public PixelPacket(int red, int green, int blue, int opacity) {
-        this.setRed(red);
-        this.setGreen(green);
-        this.setBlue(blue);
-        this.setOpacity(opacity);
+        this(ColorValue.valueOf(red, green, blue, opacity));
+    }
+
+    public PixelPacket(ColorValue value) {
+        this.value = value;
     }
     
     @Override
     public boolean equals(Object o){
-        if(o instanceof PixelPacket){
-            PixelPacket pixel = (PixelPacket) o;
-            return  this.getRed()     == pixel.getRed()   &&
-                    this.getGreen()   == pixel.getGreen() &&
-                    this.getBlue()    == pixel.getBlue()  &&
-                    this.getOpacity() == pixel.getOpacity();
-        }else{
-            return true;
+        return o instanceof PixelPacket && value.equals(((PixelPacket) o).value);
+    }
+
+    /**
+     * Makes the setters throw from now on, for colors that are shared.
+     */
+    PixelPacket freeze() {
+        frozen = true;
+        return this;
+    }
+
+    private void checkFrozen() {
+        if (frozen) {
+            throw new UnsupportedOperationException("shared colors can't be changed");
         }
     }
 
     public int getBlue() {
-        return blue;
+        return value.getBlue();
     }
 
     public int getGreen() {
-        return green;
+        return value.getGreen();
     }
 
     public int getOpacity() {
-        return opacity;
+        return value.getOpacity();
     }
 
     public int getRed() {
-        return red;
+        return value.getRed();
+    }
+
+    /**
+     * Returns the color as it is now, which later changes to this packet
+     * leave alone.
+     */
+    public ColorValue getValue() {
+        return value;
+    }
+
+    @Override
+    public int hashCode() {
+        return value.hashCode();
     }
 
     public void setBlue(int blue) {
-        this.blue = blue%256;
-        // Serabe: Don't touch. Java defined -56%256 as 
-        if(this.blue < 0) this.blue += 256;
+        checkFrozen();
+        value = value.withBlue(blue);
     }
 
     public void setGreen(int green) {
-        this.green = green%256;
-        // Serabe: Don't touch. Java defined -56%256 as 
-        if(this.green < 0) this.green += 256;
+        checkFrozen();
+        value = value.withGreen(green);
     }
 
     public void setOpacity(int opacity) {
-        this.opacity = opacity%256;
-        // Serabe: Don't touch. Java defined -56%256 as 
-        if(this.opacity < 0) this.opacity += 256;
+        checkFrozen();
+        value = value.withOpacity(opacity);
     }
 
     public void setRed(int red) {
-        this.red = red%256;
-        // Serabe: Don't touch. Java defined -56%256 as 
-        if(this.red < 0) this.red += 256;
+        checkFrozen();
+        value = value.withRed(red);
+    }
+
+    public void setValue(ColorValue value) {
+        checkFrozen();
+        this.value = value;
     }
 
     public Color toColor() {
-        return new Color( red, green, blue, 255-opacity);// See warning above.
+        return value.toColor();
     }
     
     public double[] toDoubleArray(){
@@ -103,7 +122,7 @@ public class PixelPacket {
     }
     
     public Color toOpaqueColor(){
-        return new Color(red, green, blue);
+        return new Color(value.getArgb() & 0xFFFFFF);
     }
     
     @Override
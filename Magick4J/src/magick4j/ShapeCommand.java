@@ -0,0 +1,261 @@
+package magick4j;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.Line2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * Renders one shape primitive: its fill, then its stroke, with the colors,
+ * gradients or patterns of the DrawInfo in effect. What depends only on the shape is
+ * settled when the command is built, so performing it allocates no commands
+ * and transforms the shape once for both fill and stroke.
+ */
+public class ShapeCommand implements Command {
+
+    /**
+     * Returns the stroke width in device space for the current transformation.
+     */
+    static float deviceStrokeWidth(DrawInfo info) {
+        double width = info.getStrokeWidth();
+        double scaledXWidth = info.getSpaceTransformation().getScaleX() * width;
+        double scaledYWidth = info.getSpaceTransformation().getScaleY() * width;
+        return (float) Math.max(scaledXWidth, scaledYWidth);
+    }
+
+    /**
+     * Returns how far, in device space, the stroke may reach beyond the
+     * outline of a shape: half the width, times the miter limit for joins.
+     */
+    static double deviceStrokeReach(DrawInfo info) {
+        return 0.5 * Math.abs(deviceStrokeWidth(info)) * Math.max(1, info.getStrokeMiterLimit());
+    }
+
+    /**
+     * Strokes an already transformed shape with the color or gradient paint.
+     */
+    static void draw(DrawContext context, Paint paint, Shape shape) {
+        DrawInfo info = context.getInfo();
+        if (!isTransparent(paint)) {
+            Graphics2D graphics = context.getGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, info.isStrokeAntialias() ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+                graphics.setStroke(info.getBasicStroke(deviceStrokeWidth(info)));
+                graphics.setPaint(paint);
+                graphics.draw(shape);
+            } finally {
+                graphics.dispose();
+            }
+        }
+    }
+
+    /**
+     * Strokes an already transformed shape with the pattern.
+     */
+    static void drawWithPattern(DrawContext context, Pattern pattern, Shape shape) {
+        DrawInfo info = context.getInfo();
+        MagickImage canvas = createMaskCanvas(context);
+        Graphics2D graphics = canvas.getImage().createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, info.isStrokeAntialias() ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+            graphics.setStroke(info.getBasicStroke(deviceStrokeWidth(info)));
+            graphics.setColor(Color.BLACK);
+            graphics.draw(shape);
+        } finally {
+            graphics.dispose();
+        }
+        context.getImage().mask(canvas, pattern);
+    }
+
+    /**
+     * Tells whether the paint is a color with no alpha, which draws nothing.
+     */
+    static boolean isTransparent(Paint paint) {
+        return paint instanceof Color && ((Color) paint).getAlpha() == 0;
+    }
+
+    private static boolean isCurved(Shape shape) {
+        double[] coords = new double[6];
+        for (PathIterator iterator = shape.getPathIterator(null); !iterator.isDone(); iterator.next()) {
+            int segment = iterator.currentSegment(coords);
+            if (segment == PathIterator.SEG_QUADTO || segment == PathIterator.SEG_CUBICTO) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static MagickImage createMaskCanvas(DrawContext context) {
+        MagickImage canvas = new MagickImage(context.getImage().getWidth(), context.getImage().getHeight());
+        canvas.setBackgroundColor(ColorDatabase.lookUp("white"));
+        canvas.erase();
+        return canvas;
+    }
+
+    /**
+     * Fills an already transformed shape with the color or gradient paint, at
+     * the fill opacity.
+     */
+    static void fill(DrawContext context, Paint paint, Shape shape) {
+        DrawInfo info = context.getInfo();
+        // TODO Should this be min, mult, or something else?
+        if (info.getFillOpacity() > 0.0 && !isTransparent(paint)) {
+            Graphics2D graphics = context.getGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, info.isStrokeAntialias() ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+                if (info.getFillOpacity() < 1.0) {
+                    graphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, (float) info.getFillOpacity()));
+                }
+                graphics.setPaint(paint);
+                graphics.fill(shape);
+            } finally {
+                graphics.dispose();
+            }
+        }
+    }
+
+    /**
+     * Fills an already transformed shape with the pattern.
+     */
+    static void fillWithPattern(DrawContext context, Pattern pattern, Shape shape) {
+        DrawInfo info = context.getInfo();
+        MagickImage canvas = createMaskCanvas(context);
+        // TODO Should this be min, mult, or something else?
+        if (Math.min(info.getFillOpacity(), info.getFill().toColor().getAlpha()) > 0.0) {
+            Graphics2D graphics = canvas.getImage().createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, info.isStrokeAntialias() ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+                if (info.getFillOpacity() < 1.0) {
+                    graphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, (float) info.getFillOpacity()));
+                }
+                graphics.setColor(Color.BLACK);
+                graphics.fill(shape);
+            } finally {
+                graphics.dispose();
+            }
+        }
+        context.getImage().mask(canvas, pattern);
+    }
+
+    private final Rectangle2D bounds;
+    private final boolean curved;
+    // Paths come in both winding rules, so the fill rule never mutates a shared path.
+    private final TransformedShape evenOdd;
+    private final boolean line;
+    private final TransformedShape nonZero;
+    private final TransformedShape shape;
+
+    public ShapeCommand(Shape shape) {
+        this.shape = new TransformedShape(shape);
+        this.bounds = shape.getBounds2D();
+        this.curved = isCurved(shape);
+        // Java doesn't fill a Line2D, so lines get their fill drawn as a stroke.
+        this.line = shape instanceof Line2D;
+        if (shape instanceof GeneralPath) {
+            GeneralPath evenOddPath = (GeneralPath) ((GeneralPath) shape).clone();
+            evenOddPath.setWindingRule(GeneralPath.WIND_EVEN_ODD);
+            this.evenOdd = new TransformedShape(evenOddPath);
+            GeneralPath nonZeroPath = (GeneralPath) ((GeneralPath) shape).clone();
+            nonZeroPath.setWindingRule(GeneralPath.WIND_NON_ZERO);
+            this.nonZero = new TransformedShape(nonZeroPath);
+        } else {
+            this.evenOdd = null;
+            this.nonZero = null;
+        }
+    }
+
+    /**
+     * Returns the bounds of the shape in user space, without the stroke.
+     */
+    public Rectangle2D getBounds() {
+        return bounds;
+    }
+
+    /**
+     * Returns the shape in user space, with the fill rule applied if the shape
+     * is a path.
+     */
+    public Shape getShape(int fillRule) {
+        return getTransformedShape(fillRule).getShape();
+    }
+
+    private TransformedShape getTransformedShape(int fillRule) {
+        if (evenOdd == null) {
+            return shape;
+        }
+        return fillRule == GeneralPath.WIND_NON_ZERO ? nonZero : evenOdd;
+    }
+
+    /**
+     * Returns the shape in device space: transformed by the space
+     * transformation and, for paths, simplified to the path tolerance. The
+     * result is kept for as long as the transformation stays the same.
+     */
+    Shape toDevice(DrawInfo info) {
+        return getTransformedShape(info.getFillRule()).get(info.getSpaceTransformation(), info.getPathTolerance());
+    }
+
+    /**
+     * Sets reach to the device space bounds the shape may paint, stroke
+     * included, with a pixel to spare for antialiasing. The user space
+     * bounds are transformed corner by corner, which is cheap and never too
+     * small. Corners is scratch space for eight values.
+     */
+    void getDeviceReach(DrawInfo info, double[] corners, Rectangle2D reach) {
+        corners[0] = corners[6] = bounds.getMinX();
+        corners[2] = corners[4] = bounds.getMaxX();
+        corners[1] = corners[3] = bounds.getMinY();
+        corners[5] = corners[7] = bounds.getMaxY();
+        info.getSpaceTransformation().transform(corners, 0, corners, 0, 4);
+
+        double minX = corners[0], maxX = corners[0], minY = corners[1], maxY = corners[1];
+        for (int c = 2; c < 8; c += 2) {
+            minX = Math.min(minX, corners[c]);
+            maxX = Math.max(maxX, corners[c]);
+            minY = Math.min(minY, corners[c + 1]);
+            maxY = Math.max(maxY, corners[c + 1]);
+        }
+        double pad = 1 + deviceStrokeReach(info);
+        reach.setRect(minX - pad, minY - pad, maxX - minX + 2 * pad, maxY - minY + 2 * pad);
+    }
+
+    public boolean isCurved() {
+        return curved;
+    }
+
+    public boolean isLine() {
+        return line;
+    }
+
+    public void perform(DrawContext context) {
+        DrawInfo info = context.getInfo();
+        Shape transformed = toDevice(info);
+
+        if (info.getFillPattern() == null) {
+            Paint fill = info.getFillGradient() == null ? info.getFill().toColor() : info.getFillGradient().getPaint(info.getSpaceTransformation());
+            if (line) {
+                draw(context, fill, transformed);
+            } else {
+                fill(context, fill, transformed);
+            }
+        } else {
+            if (line) {
+                drawWithPattern(context, info.getFillPattern(), transformed);
+            } else {
+                fillWithPattern(context, info.getFillPattern(), transformed);
+            }
+        }
+
+        if (info.getStrokePattern() == null) {
+            draw(context, info.getStrokeGradient() == null ? info.getStroke().toColor() : info.getStrokeGradient().getPaint(info.getSpaceTransformation()), transformed);
+        } else {
+            drawWithPattern(context, info.getStrokePattern(), transformed);
+        }
+    }
+}
@@ -1,24 +1,20 @@
 package magick4j;
 
 import java.awt.Shape;
-import java.awt.geom.GeneralPath;
-import java.awt.geom.Line2D;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Creates instances of the built-in drawing commands.
  */
 public class StandardCommandBuilder extends CommandBuilder{
 
-    final StandardCommandBuilder builder = this;
-    
     @Override
     public Command fill(final String color) {
-        return new Command() {
+        return new StateCommand() {
             public void perform(DrawContext context) {
                 if(context.hasPattern(color)){
                     context.getInfo().setFill(context.getPattern(color));
+                } else if(context.hasGradient(color)){
+                    context.getInfo().setFill(context.getGradient(color));
                 } else {
                     context.getInfo().setFill(ColorDatabase.queryDefault(color));
                 }
@@ -28,7 +24,7 @@ public class StandardCommandBuilder extends CommandBuilder{
 
     @Override
     public Command fillOpacity(final double opacity) {
-        return new Command() {
+        return new StateCommand() {
             public void perform(DrawContext context) {
                 context.getInfo().setFillOpacity(opacity);
             }
@@ -37,7 +33,7 @@ public class StandardCommandBuilder extends CommandBuilder{
     
     @Override
     public Command fillRule(final int wind) {
-        return new Command() {
+        return new StateCommand() {
             public void perform(DrawContext context) {
                 context.getInfo().setFillRule(wind);
             }
@@ -63,11 +59,22 @@ public class StandardCommandBuilder extends CommandBuilder{
         };
     }
 
+    @Override
+    public Command pushGradient(final String name, final Gradient gradient) {
+        // Gradients are only data, so defining one is a state change.
+        return new StateCommand() {
+            public void perform(DrawContext context) {
+                context.addGradient(name, gradient);
+            }
+        };
+    }
+
     @Override
     public Command pushPattern(final Pattern pattern) {
         return new Command(){
             public void perform(DrawContext context){
-                context.addPattern(pattern);
+                // Each draw gets its own pattern image, so parsed programs can be drawn again.
+                context.addPattern(pattern.instantiate());
                 context.composePattern(pattern.getName());
             }
         };
@@ -75,50 +82,12 @@ public class StandardCommandBuilder extends CommandBuilder{
     
     @Override
     public Command shape(final Shape s) {
-        return new Command(){
-            public void perform(DrawContext context){
-                DrawInfo info = context.getInfo();
-                List<Command> list = new ArrayList<Command>();
-                if(s instanceof GeneralPath){
-                    ((GeneralPath) s).setWindingRule(info.getFillRule());
-                }
-
-                if(info.getFillPattern() == null){
-                    // This is suposed to fix a bug in Java that do not "fill" a Line2D Shape.
-                    if(s instanceof Line2D){
-                        PixelPacket p = info.getStroke();
-                        list.add(builder.stroke(info.getFill()));
-                        list.add(builder.drawShape(info.getStroke().toColor(), s));
-                        list.add(builder.stroke(p));
-                    } else {
-                        list.add(builder.fillShape(info.getFill().toColor(), s));
-                    }
-                } else {
-                    // This is suposed to fix a bug in Java that do not "fill" a Line2D Shape.
-                    if(s instanceof Line2D){
-                        Pattern p = info.getStrokePattern();
-                        list.add(builder.stroke(info.getFillPattern()));
-                        list.add(builder.drawShapeWithPattern(info.getStrokePattern(), s));
-                        list.add(builder.stroke(p));
-                    } else {
-                        list.add(builder.fillShapeWithPattern(info.getFillPattern(), s));
-                    }
-                }
-
-                if(info.getStrokePattern() == null){
-                    list.add(builder.drawShape(info.getStroke().toColor(), s));
-                } else {
-                    list.add(builder.drawShapeWithPattern(info.getStrokePattern(), s));
-                }
-
-                builder.compose(list).perform(context);
-            }
-        };
+        return new ShapeCommand(s);
     }
 
     @Override
     public Command stroke(final Pattern pattern) {
-        return new Command() {
+        return new StateCommand() {
             public void perform(DrawContext context){
                 context.getInfo().setStrokePattern(pattern);
             }
@@ -127,7 +96,7 @@ public class StandardCommandBuilder extends CommandBuilder{
 
     @Override
     public Command stroke(final PixelPacket pixel) {
-        return new Command() {
+        return new StateCommand() {
             public void perform(DrawContext context){
                 context.getInfo().setStroke(pixel);
             }
@@ -136,10 +105,12 @@ public class StandardCommandBuilder extends CommandBuilder{
 
     @Override
     public Command stroke(final String color){
-        return new Command(){
+        return new StateCommand(){
             public void perform(DrawContext context){
                 if(context.hasPattern(color)){
                     context.getInfo().setStroke(context.getPattern(color));
+                } else if(context.hasGradient(color)){
+                    context.getInfo().setStroke(context.getGradient(color));
                 } else {
                     context.getInfo().setStroke(ColorDatabase.queryDefault(color));
                 }
@@ -150,7 +121,7 @@ public class StandardCommandBuilder extends CommandBuilder{
 
     @Override
     public Command strokeAntialias(final boolean antialias) {
-        return new Command() {
+        return new StateCommand() {
             public void perform(DrawContext context) {
                 context.getInfo().setStrokeAntialias(antialias);
             }
@@ -159,7 +130,7 @@ public class StandardCommandBuilder extends CommandBuilder{
 
     @Override
     public Command strokeDashArray(final double... lengths) {
-        return new Command() {
+        return new StateCommand() {
             public void perform(DrawContext context) {
                 context.getInfo().setStrokeDashArray(lengths);
             }
@@ -168,7 +139,7 @@ public class StandardCommandBuilder extends CommandBuilder{
 
     @Override
     public Command strokeLinecap(final int linecap) {
-        return new Command() {
+        return new StateCommand() {
             public void perform(DrawContext context) {
                 context.getInfo().setStrokeLinecap(linecap);
             }
@@ -177,7 +148,7 @@ public class StandardCommandBuilder extends CommandBuilder{
 
     @Override
     public Command strokeLinejoin(final int linejoin) {
-        return new Command() {
+        return new StateCommand() {
             public void perform(DrawContext context) {
                 context.getInfo().setStrokeLinejoin(linejoin);
             }
@@ -186,7 +157,7 @@ public class StandardCommandBuilder extends CommandBuilder{
 
     @Override
     public Command strokeMiterLimit(final float miterLimit) {
-        return new Command() {
+        return new StateCommand() {
             public void perform(DrawContext context) {
                 context.getInfo().setStrokeMiterLimit(miterLimit);
             }
@@ -195,16 +166,16 @@ public class StandardCommandBuilder extends CommandBuilder{
 
     @Override
     public Command strokeOpacity(final double opacity) {
-        return new Command() {
+        return new StateCommand() {
             public void perform(DrawContext context) {
-                context.getInfo().getStroke().setOpacity((int) Math.round(255*(1-opacity)));
+                context.getInfo().setStrokeOpacity(opacity);
             }
         };
     }
 
     @Override
     public Command strokeWidth(final double width) {
-        return new Command() {
+        return new StateCommand() {
             public void perform(DrawContext context) {
                 context.getInfo().setStrokeWidth(width);
             }
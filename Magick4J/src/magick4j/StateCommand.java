@@ -0,0 +1,9 @@
+package magick4j;
+
+/**
+ * A command that only changes the DrawInfo, such as a color, a line style or
+ * the transformation. It neither draws nor changes the target image, so it
+ * can be replayed on its own, as tiles and draw sessions do.
+ */
+public interface StateCommand extends Command {
+}
@@ -0,0 +1,63 @@
+package magick4j;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+
+/**
+ * Draws a string with the font and fill of the DrawInfo, its baseline
+ * starting at the point, through the transformation.
+ */
+class TextCommand implements Command {
+
+    /**
+     * Draws the string in the graphics, which already has its transformation.
+     */
+    static void draw(Graphics2D graphics, DrawInfo info, String text, double x, double y) {
+        Color fill = info.getFill().toColor();
+        if (info.getFillOpacity() > 0.0 && fill.getAlpha() > 0) {
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            if (info.getFillOpacity() < 1.0) {
+                graphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, (float) info.getFillOpacity()));
+            }
+            graphics.setFont(info.getFont());
+            graphics.setColor(fill);
+            graphics.drawString(text, (float) x, (float) y);
+        }
+    }
+
+    private final String text;
+    private final double x;
+    private final double y;
+
+    public TextCommand(double x, double y, String text) {
+        this.x = x;
+        this.y = y;
+        this.text = text;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public void perform(DrawContext context) {
+        DrawInfo info = context.getInfo();
+        Graphics2D graphics = context.getGraphics();
+        try {
+            graphics.transform(info.getSpaceTransformation());
+            draw(graphics, info, text, x, y);
+        } finally {
+            graphics.dispose();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package magick4j;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of DrawInfo.fitText: the point size chosen for the text and the
+ * lines it was broken into at that size.
+ */
+public class TextFit {
+    private final boolean fits;
+    private final List<String> lines;
+    private final TypeMetrics metrics;
+    private final double pointSize;
+
+    TextFit(double pointSize, List<String> lines, TypeMetrics metrics, boolean fits) {
+        this.pointSize = pointSize;
+        this.lines = Collections.unmodifiableList(lines);
+        this.metrics = metrics;
+        this.fits = fits;
+    }
+
+    public List<String> getLines() {
+        return lines;
+    }
+
+    /**
+     * Returns the metrics of all the lines together, as
+     * getMultilineTypeMetrics would.
+     */
+    public TypeMetrics getMetrics() {
+        return metrics;
+    }
+
+    public double getPointSize() {
+        return pointSize;
+    }
+
+    /**
+     * Returns the lines joined with newlines, ready for annotate.
+     */
+    public String getText() {
+        StringBuilder text = new StringBuilder();
+        for (String line : lines) {
+            if (text.length() > 0) {
+                text.append('\n');
+            }
+            text.append(line);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Tells whether the text fits the box. When even the smallest size allowed
+     * doesn't fit, the result still has that size and its lines.
+     */
+    public boolean isFit() {
+        return fits;
+    }
+}
@@ -5,31 +5,86 @@
 
 package magick4j;
 
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
 import java.awt.image.WritableRaster;
 
 /**
+ * Tiles an image with the texture, opaque. Images backed by ARGB ints get the
+ * first rows of tiles packed from the texture samples and replicated across,
+ * then the rows below copied down from those, in runs that double each time.
  *
  * @author serabe
  */
 public class TextureFill {
 
     private MagickImage texture;
-    
+
     public TextureFill(MagickImage image){
         this.texture = image;
     }
-    
+
     public void fill(MagickImage image){
+        Raster textureRaster = this.texture.getImage().getRaster();
+        if (image.getImage().getType() != BufferedImage.TYPE_INT_ARGB || textureRaster.getNumBands() < 3
+                || this.texture.getWidth() == 0 || this.texture.getHeight() == 0) {
+            fillPixels(image);
+            return;
+        }
         int columnsBackground  = this.texture.getWidth(),
             rowsBackground     = this.texture.getHeight(),
             columns             = image.getWidth(),
             rows                = image.getHeight();
-        
+        if (columns == 0 || rows == 0) {
+            return;
+        }
+        WritableRaster imageRaster = image.getImage().getRaster();
+        int[] pixels = ((DataBufferInt) imageRaster.getDataBuffer()).getData();
+        SinglePixelPackedSampleModel sampleModel = (SinglePixelPackedSampleModel) imageRaster.getSampleModel();
+        int stride = sampleModel.getScanlineStride();
+        // Where pixel 0,0 is, which isn't the start of the data for subimages.
+        int origin = imageRaster.getDataBuffer().getOffset()
+                + sampleModel.getOffset(-imageRaster.getSampleModelTranslateX(), -imageRaster.getSampleModelTranslateY());
+        int bands = textureRaster.getNumBands();
+        int width = Math.min(columnsBackground, columns);
+        int[] samples = new int[width * bands];
+
+        for (int y = 0; y < Math.min(rowsBackground, rows); y++) {
+            textureRaster.getPixels(0, y, width, 1, samples);
+            int offset = origin + y * stride;
+            // setPixel keeps the low byte of each sample, and the alpha is opaque.
+            for (int x = 0; x < width; x++) {
+                int s = x * bands;
+                pixels[offset + x] = 0xFF000000 | (samples[s] & 0xFF) << 16 | (samples[s + 1] & 0xFF) << 8 | samples[s + 2] & 0xFF;
+            }
+            replicate(pixels, offset, width, columns);
+        }
+        if (stride == columns) {
+            // Whole tile rows at once, the image being one run of pixels.
+            replicate(pixels, origin, rowsBackground * columns, rows * columns);
+        } else {
+            for (int y = rowsBackground; y < rows; y++) {
+                System.arraycopy(pixels, origin + (y - rowsBackground) * stride, pixels, origin + y * stride, columns);
+            }
+        }
+    }
+
+    /**
+     * The original, pixel by pixel, for other images and textures.
+     */
+    private void fillPixels(MagickImage image){
+        int columnsBackground  = this.texture.getWidth(),
+            rowsBackground     = this.texture.getHeight(),
+            columns             = image.getWidth(),
+            rows                = image.getHeight();
+
         WritableRaster textureRaster = this.texture.getImage().getRaster(),
                        imageRaster = image.getImage().getRaster();
-        
+
         for(int y = 0; y < rows; y++){
-            
+
             for(int x = 0; x < columns; x++){
                 double[] data = new double[4];
                 double[] texturePixel = textureRaster.getPixel(x%columnsBackground, y%rowsBackground, (double[]) null);
@@ -41,4 +96,17 @@ public class TextureFill {
             }
         }
     }
+
+    /**
+     * Repeats the first period values from offset until length values are
+     * filled, doubling the copied run each time.
+     */
+    private static void replicate(int[] values, int offset, int period, int length) {
+        int filled = period;
+        while (filled < length) {
+            int run = Math.min(filled, length - filled);
+            System.arraycopy(values, offset, values, offset + filled, run);
+            filled += run;
+        }
+    }
 }
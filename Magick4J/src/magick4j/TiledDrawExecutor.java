@@ -0,0 +1,231 @@
+package magick4j;
+
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Draws a command list tile by tile on a shared thread pool. The list is
+ * walked once first, on the calling thread: state changes are performed on
+ * the caller's DrawInfo, and each shape is sorted into the tiles its device
+ * bounds touch, along with a copy of the DrawInfo it is drawn with. Shapes
+ * that miss the image are dropped there.
+ *
+ * Each tile then draws its own shapes, in order, clipped to the tile. Shapes
+ * across tiles that clipping would render differently, see
+ * DrawExecutor.isClipExact, are drawn once, unclipped, by the last of their
+ * tiles to reach them. The other tiles set aside until then, and their
+ * threads go on with other tiles. Every pixel comes out as it would from a
+ * serial draw, without any copy of the image.
+ *
+ * Lists that push graphic contexts, define clip paths or patterns, or draw
+ * anything but shapes work on whole images, so they aren't tiled.
+ */
+class TiledDrawExecutor {
+
+    /**
+     * A shape and the DrawInfo it is drawn with. Shared ones are drawn once
+     * for all their tiles, when every one of them has arrived.
+     */
+    private static final class Op {
+        private int arrived = 0;
+        private final ShapeCommand command;
+        private final DrawInfo info;
+        private final int tiles;
+        private final List<Tile> waiting;
+
+        public Op(ShapeCommand command, DrawInfo info, int tiles, boolean shared) {
+            this.command = command;
+            this.info = info;
+            this.tiles = tiles;
+            this.waiting = shared ? new ArrayList<Tile>() : null;
+        }
+
+        public boolean isShared() {
+            return waiting != null;
+        }
+    }
+
+    /**
+     * A tile, its shapes, and how far it has drawn them.
+     */
+    private static final class Tile {
+        private final Rectangle bounds;
+        private DrawContext context;
+        private int next = 0;
+        private final List<Op> ops = new ArrayList<Op>();
+        private DrawInfo state;
+
+        public Tile(Rectangle bounds) {
+            this.bounds = bounds;
+        }
+    }
+
+    /** Tells the workers that every tile is done. */
+    private static final Tile DONE = new Tile(null);
+
+    /**
+     * Tells whether the commands only change state and draw shapes.
+     */
+    public static boolean canTile(List<Command> commands) {
+        for (Command command : commands) {
+            if (!(command instanceof StateCommand || command instanceof ShapeCommand)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Draws the shapes of the tile until it is done, returning true, or it
+     * reaches a shared shape other tiles have yet to, returning false. The
+     * last tile to reach a shared shape draws it and queues the others again.
+     */
+    private static boolean draw(Tile tile, MagickImage image, BlockingQueue<Tile> queue) {
+        while (tile.next < tile.ops.size()) {
+            Op op = tile.ops.get(tile.next);
+            if (op.isShared()) {
+                synchronized (op) {
+                    op.arrived++;
+                    if (op.arrived < op.tiles) {
+                        op.waiting.add(tile);
+                        return false;
+                    }
+                }
+                DrawContext context = new DrawContext(op.info.clone(), image);
+                try {
+                    op.command.perform(context);
+                } finally {
+                    context.dispose();
+                }
+                for (Tile other : op.waiting) {
+                    other.next++;
+                    queue.add(other);
+                }
+            } else {
+                if (tile.state != op.info) {
+                    if (tile.context != null) {
+                        tile.context.dispose();
+                    }
+                    // A copy, since drawing keeps derived strokes in the DrawInfo.
+                    tile.context = new DrawContext(op.info.clone(), image);
+                    tile.context.setClip(tile.bounds);
+                    tile.state = op.info;
+                }
+                op.command.perform(tile.context);
+            }
+            tile.next++;
+        }
+        if (tile.context != null) {
+            tile.context.dispose();
+            tile.context = null;
+            tile.state = null;
+        }
+        return true;
+    }
+
+    public static DrawStatistics execute(DrawInfo info, final MagickImage image, List<Command> commands, int tileSize, int threads) {
+        int columns = (image.getWidth() + tileSize - 1) / tileSize, rows = (image.getHeight() + tileSize - 1) / tileSize;
+        List<Tile> tiles = new ArrayList<Tile>();
+        for (int y = 0; y < image.getHeight(); y += tileSize) {
+            for (int x = 0; x < image.getWidth(); x += tileSize) {
+                tiles.add(new Tile(new Rectangle(x, y, Math.min(tileSize, image.getWidth() - x), Math.min(tileSize, image.getHeight() - y))));
+            }
+        }
+
+        // Sort the shapes into tiles, leaving the caller's DrawInfo as a
+        // serial draw would. Tiles only ever read the copies.
+        int shapes = 0, culled = 0;
+        double[] corners = new double[8];
+        Rectangle2D reach = new Rectangle2D.Double();
+        Rectangle area = new Rectangle();
+        DrawInfo state = null;
+        DrawContext context = new DrawContext(info, image);
+        try {
+            for (Command command : commands) {
+                if (!(command instanceof ShapeCommand)) {
+                    command.perform(context);
+                    state = null;
+                    continue;
+                }
+                ShapeCommand shape = (ShapeCommand) command;
+                shapes++;
+                shape.getDeviceReach(info, corners, reach);
+                if (reach.getMaxX() < 0 || reach.getMinX() > image.getWidth() || reach.getMaxY() < 0 || reach.getMinY() > image.getHeight()) {
+                    culled++;
+                    continue;
+                }
+                area.setRect(reach);
+                if (state == null) {
+                    state = info.clone();
+                }
+                int left = Math.max(0, area.x / tileSize), right = Math.min(columns - 1, (area.x + area.width) / tileSize);
+                int top = Math.max(0, area.y / tileSize), bottom = Math.min(rows - 1, (area.y + area.height) / tileSize);
+                int count = (right - left + 1) * (bottom - top + 1);
+                Op op = new Op(shape, state, count, count > 1 && !DrawExecutor.isClipExact(info, shape));
+                for (int row = top; row <= bottom; row++) {
+                    for (int column = left; column <= right; column++) {
+                        tiles.get(row * columns + column).ops.add(op);
+                    }
+                }
+            }
+        } finally {
+            context.dispose();
+        }
+
+        final BlockingQueue<Tile> queue = new LinkedBlockingQueue<Tile>(tiles);
+        final int workers = Math.min(tiles.size(), threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+        final int[] remaining = {tiles.size()};
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        try {
+            for (int w = 0; w < workers; w++) {
+                futures.add(DrawPool.get().submit(new Callable<Object>() {
+                    public Object call() {
+                        try {
+                            for (Tile tile = queue.take(); tile != DONE; tile = queue.take()) {
+                                if (draw(tile, image, queue)) {
+                                    synchronized (remaining) {
+                                        if (--remaining[0] == 0) {
+                                            release(queue, workers);
+                                        }
+                                    }
+                                }
+                            }
+                        } catch (Throwable e) {
+                            // Let the other workers stop rather than wait for tiles.
+                            release(queue, workers);
+                            throw Thrower.throwAny(e);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw Thrower.throwAny(e.getCause());
+        } catch (InterruptedException e) {
+            // Keep the caller's interrupt status for whoever checks it next.
+            Thread.currentThread().interrupt();
+            throw Thrower.throwAny(e);
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return new DrawStatistics(commands.size(), shapes, culled);
+    }
+
+    private static void release(BlockingQueue<Tile> queue, int workers) {
+        for (int w = 0; w < workers; w++) {
+            queue.add(DONE);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package magick4j;
+
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.GeneralPath;
+
+/**
+ * A user space shape that remembers its device space version for the last
+ * transform and path tolerance it was asked for. A shape that is filled and
+ * stroked, drawn in several tiles, or drawn again by a program that is
+ * rendered over and over, is then only transformed once. The identity
+ * transform doesn't copy paths at all.
+ *
+ * The device shape is published whole through a volatile field, so tiles may
+ * share one instance. Device shapes are never modified after that.
+ */
+class TransformedShape {
+
+    private static final class Device {
+        private final Shape shape;
+        private final double tolerance;
+        private final AffineTransform transform;
+
+        public Device(AffineTransform transform, double tolerance, Shape shape) {
+            this.transform = transform;
+            this.tolerance = tolerance;
+            this.shape = shape;
+        }
+    }
+
+    private volatile Device last;
+    private final Shape shape;
+
+    public TransformedShape(Shape shape) {
+        this.shape = shape;
+    }
+
+    /**
+     * Returns the shape transformed and, for paths, simplified to the
+     * tolerance if it is positive.
+     */
+    public Shape get(AffineTransform transform, double tolerance) {
+        boolean path = shape instanceof GeneralPath;
+        boolean simplify = tolerance > 0 && path;
+        // Java2D has its own ways with rectangles, lines and the like, so those
+        // are still turned into paths, just once.
+        if (transform.isIdentity() && path && !simplify) {
+            return shape;
+        }
+        Device device = last;
+        if (device != null && device.tolerance == tolerance && device.transform.equals(transform)) {
+            return device.shape;
+        }
+        Shape transformed = transform.createTransformedShape(shape);
+        if (simplify) {
+            transformed = PathSimplifier.simplify(transformed, tolerance);
+        }
+        // Keep a copy, since the transform of a DrawInfo changes in place.
+        last = new Device(new AffineTransform(transform), tolerance, transformed);
+        return transformed;
+    }
+
+    public Shape getShape() {
+        return shape;
+    }
+}
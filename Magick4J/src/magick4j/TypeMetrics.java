@@ -2,13 +2,22 @@ package magick4j;
 
 import java.awt.FontMetrics;
 
-public class TypeMetrics {
+public class TypeMetrics implements Cloneable {
     private double ascent = 0;
     private double descent = 0;
     private double height = 0;
     private double maxAdvance = 0;
     private double width = 0;
 
+    @Override
+    public TypeMetrics clone() {
+        try {
+            return (TypeMetrics) super.clone();
+        } catch (Exception e) {
+            throw Thrower.throwAny(e);
+        }
+    }
+
     public void compose(TypeMetrics metrics){
         
         if(metrics.getWidth() > getWidth()){
@@ -0,0 +1,71 @@
+package magick4j;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * Measures strings without creating images or graphics for each request.
+ * Font metrics come from one shared graphics, so they all use the same
+ * untransformed FontRenderContext that a fresh image graphics has. Measured
+ * strings are kept in a bounded LRU, so labels measured again and again cost a
+ * hash lookup.
+ */
+class TypeMetricsCache {
+
+    private static final class Key {
+        private final Font font;
+        private final int hash;
+        private final String string;
+
+        public Key(Font font, String string) {
+            this.font = font;
+            this.string = string;
+            this.hash = 31 * font.hashCode() + string.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return hash == key.hash && string.equals(key.string) && font.equals(key.font);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final LruCache<Font, FontMetrics> FONT_METRICS = new LruCache<Font, FontMetrics>(64);
+    private static final Graphics2D GRAPHICS = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+    private static final LruCache<Key, TypeMetrics> METRICS = new LruCache<Key, TypeMetrics>(4096);
+
+    public static FontMetrics getFontMetrics(Font font) {
+        FontMetrics metrics = FONT_METRICS.get(font);
+        if (metrics == null) {
+            synchronized (GRAPHICS) {
+                metrics = GRAPHICS.getFontMetrics(font);
+            }
+            FONT_METRICS.put(font, metrics);
+        }
+        return metrics;
+    }
+
+    /**
+     * Returns the metrics of a single line. The result is a copy the caller
+     * may change.
+     */
+    public static TypeMetrics getTypeMetrics(Font font, String string) {
+        Key key = new Key(font, string);
+        TypeMetrics metrics = METRICS.get(key);
+        if (metrics == null) {
+            metrics = TypeMetrics.fromFontMetrics(getFontMetrics(font), string);
+            METRICS.put(key, metrics);
+        }
+        return metrics.clone();
+    }
+}
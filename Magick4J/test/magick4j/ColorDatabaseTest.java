@@ -0,0 +1,48 @@
+package magick4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import org.junit.Test;
+
+public class ColorDatabaseTest {
+
+    private static String nameOf(String color) {
+        return ColorDatabase.lookUp(color).toString();
+    }
+
+    @Test
+    public void mixedCaseEntriesCanBeFound() {
+        assertNotNull(ColorDatabase.lookUp("darkolivegreen"));
+        assertNotNull(ColorDatabase.lookUp("IndianRed"));
+        assertNotNull(ColorDatabase.lookUp("palevioletred"));
+    }
+
+    @Test
+    public void reverseNamesLookUpTheSameColor() {
+        String[] names = {"aqua", "cyan", "azure1", "gray50", "grey50", "magenta", "fuchsia", "navyblue", "lightgoldenrod"};
+        for (String name : names) {
+            PixelPacket color = ColorDatabase.lookUp(name);
+            assertEquals(name, color, ColorDatabase.lookUp(color.toString()));
+        }
+    }
+
+    @Test
+    public void shortestThenAlphabeticalNameWins() {
+        assertEquals("aqua", nameOf("cyan"));
+        assertEquals("azure", nameOf("azure1"));
+        assertEquals("fuchsia", nameOf("magenta"));
+        assertEquals("gray50", nameOf("grey50"));
+    }
+
+    @Test
+    public void transparentColorsAreNamedNone() {
+        assertEquals("none", nameOf("transparent"));
+        assertEquals("none", nameOf("None"));
+    }
+
+    @Test
+    public void unnamedColorsAreWrittenAsRgb() {
+        assertEquals("rgb(1,2,3)", new PixelPacket(1, 2, 3).toString());
+    }
+}
@@ -0,0 +1,84 @@
+package magick4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.awt.Color;
+import java.util.Random;
+import org.junit.Test;
+
+public class ColorValueTest {
+
+    @Test
+    public void argbRoundTrips() {
+        Random random = new Random(21);
+        for (int i = 0; i < 10000; i++) {
+            int argb = random.nextInt();
+            ColorValue value = new ColorValue(argb);
+            assertEquals(argb, value.getArgb());
+            assertEquals(value, ColorValue.valueOf(value.getRed(), value.getGreen(), value.getBlue(), value.getOpacity()));
+            assertEquals(new Color(argb, true), value.toColor());
+        }
+    }
+
+    @Test
+    public void channelsRoundTrip() {
+        for (int channel = 0; channel < 256; channel++) {
+            ColorValue value = ColorValue.valueOf(channel, 255 - channel, channel / 2, 255 - channel / 3);
+            assertEquals(channel, value.getRed());
+            assertEquals(255 - channel, value.getGreen());
+            assertEquals(channel / 2, value.getBlue());
+            assertEquals(255 - channel / 3, value.getOpacity());
+            assertEquals(channel / 3, value.getAlpha());
+        }
+    }
+
+    @Test
+    public void channelsWrapModulo256() {
+        ColorValue value = ColorValue.valueOf(-56, 300, 256, -1);
+        assertEquals(200, value.getRed());
+        assertEquals(44, value.getGreen());
+        assertEquals(0, value.getBlue());
+        assertEquals(255, value.getOpacity());
+    }
+
+    @Test
+    public void colorIsKept() {
+        ColorValue value = new ColorValue(0x80ff0000);
+        assertSame(value.toColor(), value.toColor());
+    }
+
+    @Test
+    public void frozenPixelPacketsThrow() {
+        try {
+            ColorDatabase.lookUp("red").setRed(0);
+            fail("expected an error");
+        } catch (UnsupportedOperationException e) {
+            assertEquals(255, ColorDatabase.lookUp("red").getRed());
+        }
+    }
+
+    @Test
+    public void pixelPacketSettersReplaceTheValue() {
+        PixelPacket pixel = new PixelPacket(1, 2, 3, 4);
+        ColorValue before = pixel.getValue();
+        pixel.setRed(10);
+        pixel.setGreen(20);
+        pixel.setBlue(30);
+        pixel.setOpacity(40);
+        assertEquals(ColorValue.valueOf(10, 20, 30, 40), pixel.getValue());
+        assertEquals(ColorValue.valueOf(1, 2, 3, 4), before);
+        assertEquals(new PixelPacket(ColorValue.valueOf(10, 20, 30, 40)), pixel);
+    }
+
+    @Test
+    public void withersChangeOneChannel() {
+        ColorValue value = ColorValue.valueOf(1, 2, 3, 4);
+        assertEquals(ColorValue.valueOf(9, 2, 3, 4), value.withRed(9));
+        assertEquals(ColorValue.valueOf(1, 9, 3, 4), value.withGreen(9));
+        assertEquals(ColorValue.valueOf(1, 2, 9, 4), value.withBlue(9));
+        assertEquals(ColorValue.valueOf(1, 2, 3, 9), value.withOpacity(9));
+        assertEquals("#fb010203", value.toString());
+    }
+}
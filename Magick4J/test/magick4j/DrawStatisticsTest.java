@@ -0,0 +1,53 @@
+package magick4j;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class DrawStatisticsTest {
+
+    private static final String SCRIPT = "fill red\n"
+            + "circle 50,50 60,50\n"
+            + "circle 500,500 510,500\n"
+            + "rectangle -50,-50 -10,-10\n"
+            + "stroke blue\n"
+            + "stroke-width 20\n"
+            // Only the stroke reaches into the image.
+            + "line -15,50 -5,60\n"
+            + "translate 1000,0\n"
+            + "circle -950,20 -940,20\n"
+            + "circle 50,20 60,20\n";
+
+    private static DrawStatistics draw(String script, int tileSize) {
+        MagickImage image = new MagickImage(100, 100);
+        DrawInfo info = new DrawInfo();
+        info.setTileSize(tileSize);
+        return info.draw(image, CommandParser.parse(script));
+    }
+
+    @Test
+    public void culledShapesAreCounted() {
+        DrawStatistics statistics = draw(SCRIPT, 0);
+        assertEquals(10, statistics.getCommandCount());
+        assertEquals(6, statistics.getShapeCount());
+        assertEquals(3, statistics.getCulledShapeCount());
+        assertEquals(3, statistics.getDrawnShapeCount());
+    }
+
+    @Test
+    public void cullingLeavesThePixelsAlone() {
+        MagickImage all = new MagickImage(100, 100);
+        new DrawInfo().draw(all, CommandParser.parse(SCRIPT));
+        MagickImage visible = new MagickImage(100, 100);
+        new DrawInfo().draw(visible, CommandParser.parse("fill red\ncircle 50,50 60,50\nstroke blue\nstroke-width 20\n"
+                + "line -15,50 -5,60\ncircle 50,20 60,20\n"));
+        TestImages.assertSamePixels("culled draw", visible, all);
+    }
+
+    @Test
+    public void tiledDrawsCountTheSame() {
+        DrawStatistics statistics = draw(SCRIPT, 32);
+        assertEquals(6, statistics.getShapeCount());
+        assertEquals(3, statistics.getCulledShapeCount());
+    }
+}
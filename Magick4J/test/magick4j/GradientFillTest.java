@@ -0,0 +1,154 @@
+package magick4j;
+
+import java.awt.image.WritableRaster;
+import java.util.Random;
+import org.junit.Test;
+
+public class GradientFillTest {
+
+    /**
+     * The per-pixel fill GradientFill used to be, which sets each pixel
+     * through the raster from the exact distance.
+     */
+    private static final class PixelFill {
+        private final PixelPacket endColor;
+        private final PixelPacket startColor;
+        private double stepBlue;
+        private double stepGreen;
+        private double stepRed;
+        private final double x1;
+        private final double x2;
+        private final double y1;
+        private final double y2;
+
+        public PixelFill(double x1, double y1, double x2, double y2, PixelPacket startColor, PixelPacket endColor) {
+            this.x1 = x1;
+            this.y1 = y1;
+            this.x2 = x2;
+            this.y2 = y2;
+            this.startColor = startColor;
+            this.endColor = endColor;
+        }
+
+        private double[] calculatePixel(double distance) {
+            return new double[] {startColor.getRed() + stepRed * distance, startColor.getGreen() + stepGreen * distance,
+                    startColor.getBlue() + stepBlue * distance, 255.0};
+        }
+
+        private void calculateSteps(double steps) {
+            stepRed = ((double) endColor.getRed() - startColor.getRed()) / steps;
+            stepBlue = ((double) endColor.getBlue() - startColor.getBlue()) / steps;
+            stepGreen = ((double) endColor.getGreen() - startColor.getGreen()) / steps;
+        }
+
+        public void fill(MagickImage image) {
+            int columns = image.getWidth(), rows = image.getHeight();
+            WritableRaster raster = image.getImage().getRaster();
+            if (Math.abs(x2 - x1) < 0.5 && Math.abs(y2 - y1) < 0.5) {
+                double steps = Math.sqrt((columns - x1) * (columns - x1) + (rows - y1) * (rows - y1));
+                calculateSteps(steps);
+                for (int y = 0; y < rows; y++) {
+                    for (int x = 0; x < columns; x++) {
+                        raster.setPixel(x, y, calculatePixel(Math.min(steps, Math.sqrt((x - x1) * (x - x1) + (y - y1) * (y - y1)))));
+                    }
+                }
+            } else if (Math.abs(x2 - x1) < 0.5) {
+                calculateSteps(Math.max(x1, columns - x1) - Math.min(x1, 0));
+                for (int y = 0; y < rows; y++) {
+                    for (int x = 0; x < columns; x++) {
+                        raster.setPixel(x, y, calculatePixel(Math.abs(x1 - x)));
+                    }
+                }
+            } else if (Math.abs(y2 - y1) < 0.5) {
+                calculateSteps(Math.max(y1, rows - y1) - Math.min(y1, 0));
+                for (int y = 0; y < rows; y++) {
+                    for (int x = 0; x < columns; x++) {
+                        raster.setPixel(x, y, calculatePixel(Math.abs(y1 - y)));
+                    }
+                }
+            } else {
+                double m = (y2 - y1) / (x2 - x1);
+                double b = y1 - m * x1;
+                if (Math.abs(m) <= rows / columns) {
+                    calculateSteps(diagonalSteps(b, m * columns + b, rows));
+                    for (int y = 0; y < rows; y++) {
+                        for (int x = 0; x < columns; x++) {
+                            raster.setPixel(x, y, calculatePixel(Math.abs(y - (m * x + b))));
+                        }
+                    }
+                } else {
+                    calculateSteps(diagonalSteps(-b / m, (rows - b) / m, columns));
+                    for (int y = 0; y < rows; y++) {
+                        for (int x = 0; x < columns; x++) {
+                            raster.setPixel(x, y, calculatePixel(Math.abs(x - ((y - b) / m))));
+                        }
+                    }
+                }
+            }
+        }
+
+        private static double diagonalSteps(double distance1, double distance2, int size) {
+            double steps = 0.0;
+            if (distance1 < 0 && distance2 < 0) {
+                steps += Math.max(Math.abs(distance1), Math.abs(distance2));
+            } else if (distance1 > size && distance2 > size) {
+                steps += Math.max(Math.abs(distance1 - size), Math.abs(distance2 - size));
+            }
+            return steps + Math.max(Math.max(distance1, size - distance1), Math.max(distance2, size - distance2));
+        }
+    }
+
+    private static void assertSameFill(double x1, double y1, double x2, double y2, PixelPacket start, PixelPacket end, int columns, int rows) {
+        MagickImage expected = new MagickImage(columns, rows);
+        new PixelFill(x1, y1, x2, y2, start, end).fill(expected);
+        MagickImage actual = new MagickImage(columns, rows);
+        new GradientFill(x1, y1, x2, y2, start, end).fill(actual);
+        TestImages.assertSamePixels(x1 + "," + y1 + " " + x2 + "," + y2 + " " + start + " " + end + " on " + columns + "x" + rows, expected, actual);
+    }
+
+    private static PixelPacket randomColor(Random random) {
+        return new PixelPacket(random.nextInt(256), random.nextInt(256), random.nextInt(256));
+    }
+
+    @Test
+    public void everyKindMatchesThePerPixelFill() {
+        PixelPacket red = new PixelPacket(255, 0, 0), black = new PixelPacket(0, 0, 0);
+        // Radial, vertical, horizontal and both diagonals.
+        assertSameFill(0, 0, 0, 0, red, black, 300, 100);
+        assertSameFill(150, 60, 150, 60, black, red, 300, 200);
+        assertSameFill(0, 0, 0, 100, red, black, 300, 100);
+        assertSameFill(-20, 0, -20, 100, black, red, 300, 100);
+        assertSameFill(0, 150, 200, 150, red, black, 300, 300);
+        assertSameFill(100, 0, 200, 300, red, black, 300, 300);
+        assertSameFill(0, 100, 300, 200, red, black, 300, 300);
+        assertSameFill(0, 0, 200, -500, black, red, 300, 300);
+    }
+
+    @Test
+    public void randomFillsMatchThePerPixelFill() {
+        Random random = new Random(9);
+        for (int i = 0; i < 60; i++) {
+            int columns = 1 + random.nextInt(300), rows = 1 + random.nextInt(300);
+            double x1 = random.nextInt(500) - 100, y1 = random.nextInt(500) - 100;
+            double x2, y2;
+            switch (i % 4) {
+                case 0:
+                    x2 = x1;
+                    y2 = y1;
+                    break;
+                case 1:
+                    x2 = x1;
+                    y2 = y1 + 1 + random.nextInt(200);
+                    break;
+                case 2:
+                    x2 = x1 + 1 + random.nextInt(200);
+                    y2 = y1;
+                    break;
+                default:
+                    x2 = x1 + 1 + random.nextInt(200);
+                    y2 = y1 + random.nextInt(401) - 200 + 0.5;
+            }
+            assertSameFill(x1, y1, x2, y2, randomColor(random), randomColor(random), columns, rows);
+        }
+    }
+}
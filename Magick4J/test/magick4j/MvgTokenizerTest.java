@@ -0,0 +1,97 @@
+package magick4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+import org.junit.Test;
+
+public class MvgTokenizerTest {
+
+    @Test
+    public void exponentsAreRead() {
+        MvgTokenizer tokens = new MvgTokenizer("1e3 2.5E-2 -4e+1");
+        assertEquals(1000.0, tokens.nextDouble(), 0);
+        assertEquals(0.025, tokens.nextDouble(), 0);
+        assertEquals(-40.0, tokens.nextDouble(), 0);
+        assertFalse(tokens.hasNext());
+    }
+
+    @Test
+    public void letterEAfterNumberIsLeftAlone() {
+        MvgTokenizer tokens = new MvgTokenizer("5e");
+        assertEquals(5.0, tokens.nextDouble(), 0);
+        assertEquals('e', tokens.peek());
+    }
+
+    @Test
+    public void longMantissasMatchParseDouble() {
+        String[] numbers = {"0.1000000000000000055511151231257827", "123456789012345678901234567890", "1e300", "4.9e-324"};
+        for (String number : numbers) {
+            assertEquals(number, Double.parseDouble(number), new MvgTokenizer(number).nextDouble(), 0);
+        }
+    }
+
+    @Test
+    public void notANumber() {
+        try {
+            new MvgTokenizer("abc").nextDouble();
+            fail("expected an error");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("expected a number"));
+        }
+    }
+
+    @Test
+    public void packedNumbersSplitAtSignsAndSecondPoints() {
+        MvgTokenizer tokens = new MvgTokenizer("10-5.5.5");
+        assertEquals(10.0, tokens.nextDouble(), 0);
+        assertTrue(tokens.hasNumber());
+        assertEquals(-5.5, tokens.nextDouble(), 0);
+        assertTrue(tokens.hasNumber());
+        assertEquals(0.5, tokens.nextDouble(), 0);
+        assertFalse(tokens.hasNumber());
+    }
+
+    @Test
+    public void randomNumbersMatchParseDouble() {
+        Random random = new Random(7);
+        for (int i = 0; i < 10000; i++) {
+            StringBuilder number = new StringBuilder();
+            if (random.nextBoolean()) {
+                number.append('-');
+            }
+            number.append(random.nextInt(100000));
+            if (random.nextBoolean()) {
+                number.append('.').append(random.nextInt(1000000));
+            }
+            if (random.nextInt(4) == 0) {
+                number.append('e').append(random.nextInt(40) - 20);
+            }
+            String text = number.toString();
+            assertEquals(text, Double.parseDouble(text), new MvgTokenizer(text).nextDouble(), 0);
+        }
+    }
+
+    @Test
+    public void separatorsAreCommasAndAnyWhitespace() {
+        MvgTokenizer tokens = new MvgTokenizer(" 1,2\n\t3 ,, 4");
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(i, tokens.nextInt());
+        }
+        assertFalse(tokens.hasNext());
+    }
+
+    @Test
+    public void stringsLoseTheirQuotes() {
+        MvgTokenizer tokens = new MvgTokenizer("'a b' \"c d\" {e \\} f} rgb(1, 2, 3) word");
+        assertEquals("a b", tokens.nextString());
+        assertEquals("c d", tokens.nextString());
+        assertEquals("e } f", tokens.nextString());
+        assertEquals("rgb(1, 2, 3)", tokens.nextString());
+        assertEquals("word", tokens.nextString());
+        assertFalse(tokens.hasNext());
+    }
+}
@@ -0,0 +1,99 @@
+package magick4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.kitfox.svg.pathcmd.Arc;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.PathIterator;
+import java.util.Random;
+import org.junit.Test;
+
+public class PathParserTest {
+
+    /**
+     * Lists the segments of a path as "M x y", "L x y", "Q ...", "C ..." and
+     * "Z", separated by spaces.
+     */
+    static String segments(GeneralPath path) {
+        StringBuilder result = new StringBuilder();
+        float[] coords = new float[6];
+        for (PathIterator iterator = path.getPathIterator(null); !iterator.isDone(); iterator.next()) {
+            int type = iterator.currentSegment(coords);
+            int count = type == PathIterator.SEG_CUBICTO ? 6 : type == PathIterator.SEG_QUADTO ? 4 : type == PathIterator.SEG_CLOSE ? 0 : 2;
+            if (result.length() > 0) {
+                result.append(' ');
+            }
+            result.append("MLQCZ".charAt(type));
+            for (int c = 0; c < count; c++) {
+                result.append(' ').append(coords[c]);
+            }
+        }
+        return result.toString();
+    }
+
+    private static String parse(String data) {
+        return segments(new PathParser().parse(data));
+    }
+
+    @Test
+    public void arcsMatchSvgSalamander() {
+        Random random = new Random(3);
+        for (int i = 0; i < 2000; i++) {
+            float fromX = random.nextInt(200), fromY = random.nextInt(200);
+            float xRadius = random.nextInt(10) == 0 ? 0 : random.nextFloat() * 80;
+            float yRadius = random.nextFloat() * 80;
+            float rotation = random.nextInt(720) - 360;
+            boolean largeArc = random.nextBoolean(), sweep = random.nextBoolean();
+            float toX = random.nextInt(10) == 0 ? fromX : random.nextFloat() * 300 - 50;
+            float toY = random.nextInt(10) == 0 ? fromY : random.nextFloat() * 300 - 50;
+
+            GeneralPath expected = new GeneralPath(GeneralPath.WIND_EVEN_ODD);
+            expected.moveTo(fromX, fromY);
+            new Arc().arcTo(expected, xRadius, yRadius, rotation, largeArc, sweep, toX, toY, fromX, fromY);
+            String data = "M" + fromX + "," + fromY + " A" + xRadius + "," + yRadius + " " + rotation + " "
+                    + (largeArc ? 1 : 0) + " " + (sweep ? 1 : 0) + " " + toX + "," + toY;
+            assertEquals(data, segments(expected), parse(data));
+        }
+    }
+
+    @Test
+    public void commandsRepeatWhileNumbersFollow() {
+        assertEquals("M 0.0 0.0 L 1.0 1.0 L 2.0 2.0 L 3.0 3.0", parse("M0,0 L1,1 2,2 3,3"));
+        assertEquals("M 0.0 0.0 L 1.0 1.0 L 2.0 2.0", parse("M0,0 1,1 2,2"));
+        assertEquals("M 1.0 1.0 L 3.0 1.0 L 3.0 5.0 L 2.0 5.0", parse("m1,1 h2 v4 h-1"));
+    }
+
+    @Test
+    public void packedNumbers() {
+        assertEquals("M 10.0 -5.5 L 0.5 -1.0", parse("M10-5.5.5-1"));
+    }
+
+    @Test
+    public void relativeMoveAfterCloseStartsFromSubpathStart() {
+        assertEquals("M 10.0 10.0 L 20.0 10.0 Z M 15.0 15.0 L 16.0 16.0", parse("M10,10 l10,0 z m5,5 l1,1"));
+    }
+
+    @Test
+    public void smoothCurvesReflectTheLastControlPoint() {
+        assertEquals("M 0.0 0.0 C 0.0 10.0 10.0 10.0 10.0 0.0 C 10.0 -10.0 20.0 -10.0 20.0 0.0",
+                parse("M0,0 C0,10 10,10 10,0 S20,-10 20,0"));
+        assertEquals("M 0.0 0.0 Q 5.0 10.0 10.0 0.0 Q 15.0 -10.0 20.0 0.0", parse("M0,0 Q5,10 10,0 T20,0"));
+    }
+
+    @Test
+    public void smoothQuadraticWithoutControlPointUsesTheCurrentPoint() {
+        assertEquals("M 0.0 0.0 L 5.0 5.0 Q 5.0 5.0 10.0 10.0", parse("M0,0 L5,5 T10,10"));
+    }
+
+    @Test
+    public void unknownCommand() {
+        try {
+            parse("M0,0 X1,1");
+            fail("expected an error");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("attribute not recognized"));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package magick4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Shape;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.Line2D;
+import java.awt.geom.PathIterator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class PathSimplifierTest {
+
+    private static List<float[]> points(Shape shape) {
+        List<float[]> points = new ArrayList<float[]>();
+        float[] coords = new float[6];
+        for (PathIterator iterator = shape.getPathIterator(null); !iterator.isDone(); iterator.next()) {
+            if (iterator.currentSegment(coords) != PathIterator.SEG_CLOSE) {
+                points.add(new float[] {coords[0], coords[1]});
+            }
+        }
+        return points;
+    }
+
+    private static GeneralPath randomWalk(long seed, int count) {
+        Random random = new Random(seed);
+        GeneralPath path = new GeneralPath();
+        float x = 0, y = 400;
+        path.moveTo(x, y);
+        for (int i = 1; i < count; i++) {
+            x += 800f / count;
+            y += (float) random.nextGaussian();
+            path.lineTo(x, y);
+        }
+        return path;
+    }
+
+    @Test
+    public void curvesAreLeftAlone() {
+        GeneralPath path = new GeneralPath();
+        path.moveTo(0, 0);
+        path.lineTo(1, 0);
+        path.quadTo(2, 2, 3, 0);
+        assertSame(path, PathSimplifier.simplify(path, 0.5));
+    }
+
+    @Test
+    public void droppedPointsStayWithinTheTolerance() {
+        for (double tolerance : new double[] {0.1, 0.25, 1, 3}) {
+            List<float[]> original = points(randomWalk(4, 20000));
+            List<float[]> simplified = points(PathSimplifier.simplify(randomWalk(4, 20000), tolerance));
+            assertTrue(simplified.size() < original.size());
+            // The kept points are a subsequence; every other point lies near its span.
+            int kept = 0;
+            for (float[] point : original) {
+                float[] start = simplified.get(kept);
+                if (point[0] == start[0] && point[1] == start[1]) {
+                    continue;
+                }
+                float[] end = simplified.get(kept + 1);
+                if (point[0] == end[0] && point[1] == end[1]) {
+                    kept++;
+                    continue;
+                }
+                double distance = Line2D.ptSegDist(start[0], start[1], end[0], end[1], point[0], point[1]);
+                assertTrue(tolerance + ": " + distance, distance <= tolerance + 1e-4);
+            }
+            assertEquals(simplified.size() - 1, kept);
+        }
+    }
+
+    @Test
+    public void subpathsKeepTheirEndsAndCloses() {
+        GeneralPath path = new GeneralPath();
+        path.moveTo(0, 0);
+        path.lineTo(5, 0.1f);
+        path.lineTo(10, 0);
+        path.lineTo(10, 10);
+        path.closePath();
+        path.moveTo(20, 20);
+        path.lineTo(25, 20.1f);
+        path.lineTo(30, 20);
+        String simplified = PathParserTest.segments((GeneralPath) PathSimplifier.simplify(path, 0.5));
+        assertEquals("M 0.0 0.0 L 10.0 0.0 L 10.0 10.0 Z M 20.0 20.0 L 30.0 20.0", simplified);
+    }
+}
@@ -0,0 +1,32 @@
+package magick4j;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Pixel comparisons shared by the drawing tests.
+ */
+class TestImages {
+
+    /**
+     * Fails, naming the first pixel that differs, unless both images have
+     * the same size and ARGB pixels.
+     */
+    static void assertSamePixels(String message, MagickImage expected, MagickImage actual) {
+        assertEquals(message + ": width", expected.getWidth(), actual.getWidth());
+        assertEquals(message + ": height", expected.getHeight(), actual.getHeight());
+        int[] expectedPixels = pixels(expected), actualPixels = pixels(actual);
+        for (int i = 0; i < expectedPixels.length; i++) {
+            if (expectedPixels[i] != actualPixels[i]) {
+                int x = i % expected.getWidth(), y = i / expected.getWidth();
+                assertEquals(message + ": pixel " + x + "," + y, Integer.toHexString(expectedPixels[i]), Integer.toHexString(actualPixels[i]));
+            }
+        }
+    }
+
+    static int[] pixels(MagickImage image) {
+        return image.getImage().getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    private TestImages() {
+    }
+}
@@ -0,0 +1,65 @@
+package magick4j;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.util.Random;
+import org.junit.Test;
+
+public class TextureFillTest {
+
+    private static final int[] TEXTURE_TYPES = {
+        BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_BGR,
+        BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_USHORT_565_RGB
+    };
+
+    /**
+     * Tiles the image pixel by pixel, the way TextureFill used to.
+     */
+    private static void fillPixels(MagickImage texture, MagickImage image) {
+        WritableRaster textureRaster = texture.getImage().getRaster(), imageRaster = image.getImage().getRaster();
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                double[] texturePixel = textureRaster.getPixel(x % texture.getWidth(), y % texture.getHeight(), (double[]) null);
+                imageRaster.setPixel(x, y, new double[] {texturePixel[0], texturePixel[1], texturePixel[2], 255.0});
+            }
+        }
+    }
+
+    private static MagickImage randomTexture(Random random, int type, int width, int height) {
+        BufferedImage texture = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                texture.setRGB(x, y, random.nextInt());
+            }
+        }
+        return new MagickImage(texture);
+    }
+
+    @Test
+    public void tilesMatchThePerPixelFill() {
+        Random random = new Random(13);
+        int[][] sizes = {{1, 1, 50, 40}, {7, 5, 64, 64}, {30, 20, 301, 97}, {120, 90, 100, 60}, {64, 64, 64, 64}};
+        for (int type : TEXTURE_TYPES) {
+            for (int[] size : sizes) {
+                MagickImage texture = randomTexture(random, type, size[0], size[1]);
+                MagickImage expected = new MagickImage(size[2], size[3]);
+                fillPixels(texture, expected);
+                MagickImage actual = new MagickImage(size[2], size[3]);
+                new TextureFill(texture).fill(actual);
+                TestImages.assertSamePixels("type " + type + ", texture " + size[0] + "x" + size[1] + ", image " + size[2] + "x" + size[3],
+                        expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void subimagesWithWiderRowsMatchThePerPixelFill() {
+        MagickImage texture = randomTexture(new Random(17), BufferedImage.TYPE_INT_RGB, 9, 7);
+        // A subimage shares the rows of its parent, so its scanline stride is wider.
+        MagickImage expected = new MagickImage(new BufferedImage(80, 60, BufferedImage.TYPE_INT_ARGB).getSubimage(5, 3, 50, 40));
+        fillPixels(texture, expected);
+        MagickImage actual = new MagickImage(new BufferedImage(80, 60, BufferedImage.TYPE_INT_ARGB).getSubimage(5, 3, 50, 40));
+        new TextureFill(texture).fill(actual);
+        TestImages.assertSamePixels("subimage", expected, actual);
+    }
+}
@@ -0,0 +1,66 @@
+package magick4j;
+
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class TiledDrawExecutorTest {
+
+    private static final int HEIGHT = 150;
+    private static final int WIDTH = 200;
+
+    /**
+     * Makes a program of filled and stroked shapes in changing styles, some
+     * of them crossing the image edges.
+     */
+    static String randomProgram(long seed, int shapes) {
+        Random random = new Random(seed);
+        String[] colors = {"red", "blue", "green", "black", "none", "#8080ff80"};
+        StringBuilder script = new StringBuilder("stroke-width 2\n");
+        for (int i = 0; i < shapes; i++) {
+            if (i % 40 == 0) {
+                script.append("fill ").append(colors[random.nextInt(colors.length)]).append('\n');
+                script.append("stroke ").append(colors[random.nextInt(colors.length)]).append('\n');
+                script.append("stroke-opacity 0.").append(random.nextInt(9) + 1).append('\n');
+            }
+            if (i % 150 == 75) {
+                script.append("rotate 3\nfill-opacity 0.7\nstroke-linejoin round\n");
+            }
+            int x = random.nextInt(WIDTH + 40) - 20, y = random.nextInt(HEIGHT + 40) - 20;
+            switch (random.nextInt(4)) {
+                case 0:
+                    script.append("circle ").append(x).append(',').append(y).append(' ').append(x + random.nextInt(20) + 1).append(',').append(y).append('\n');
+                    break;
+                case 1:
+                    script.append("rectangle ").append(x).append(',').append(y).append(' ').append(x + random.nextInt(60)).append(',').append(y + random.nextInt(20)).append('\n');
+                    break;
+                case 2:
+                    script.append("line ").append(x).append(',').append(y).append(' ').append(x + random.nextInt(80)).append(',').append(y + random.nextInt(80)).append('\n');
+                    break;
+                default:
+                    script.append("path 'M").append(x).append(' ').append(y).append(" c 20 -30 40 30 60 0 s 20 20 40 0 z'\n");
+            }
+        }
+        return script.toString();
+    }
+
+    private static MagickImage draw(List<Command> commands, int tileSize) {
+        MagickImage image = new MagickImage(WIDTH, HEIGHT);
+        DrawInfo info = new DrawInfo();
+        info.setTileSize(tileSize);
+        info.setTileThreads(4);
+        info.draw(image, commands);
+        return image;
+    }
+
+    @Test
+    public void tiledDrawsMatchSerialDraw() {
+        for (long seed = 1; seed <= 3; seed++) {
+            List<Command> commands = CommandParser.parse(randomProgram(seed, 600));
+            MagickImage serial = draw(commands, 0);
+            for (int tileSize : new int[] {1, 7, 256}) {
+                TestImages.assertSamePixels("seed " + seed + ", tile size " + tileSize, serial, draw(commands, tileSize));
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package magick4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.Rectangle2D;
+import org.junit.Test;
+
+public class TransformedShapeTest {
+
+    private static GeneralPath triangle() {
+        GeneralPath path = new GeneralPath();
+        path.moveTo(0, 0);
+        path.lineTo(10, 0);
+        path.lineTo(0, 10);
+        path.closePath();
+        return path;
+    }
+
+    @Test
+    public void identityReturnsPathsAsTheyAre() {
+        GeneralPath path = triangle();
+        assertSame(path, new TransformedShape(path).get(new AffineTransform(), 0));
+    }
+
+    @Test
+    public void sameTransformReusesTheDeviceShape() {
+        TransformedShape shape = new TransformedShape(triangle());
+        Shape first = shape.get(AffineTransform.getScaleInstance(2, 2), 0);
+        assertSame(first, shape.get(AffineTransform.getScaleInstance(2, 2), 0));
+        assertNotSame(first, shape.get(AffineTransform.getScaleInstance(2, 2), 0.5));
+    }
+
+    @Test
+    public void transformChangedInPlaceIsNoticed() {
+        TransformedShape shape = new TransformedShape(triangle());
+        AffineTransform transform = AffineTransform.getScaleInstance(2, 2);
+        Shape first = shape.get(transform, 0);
+        assertEquals(new Rectangle2D.Float(0, 0, 20, 20), first.getBounds2D());
+
+        // A DrawInfo changes its transform in place, as "scale" does.
+        transform.scale(2, 2);
+        Shape second = shape.get(transform, 0);
+        assertNotSame(first, second);
+        assertEquals(new Rectangle2D.Float(0, 0, 40, 40), second.getBounds2D());
+        assertEquals(new Rectangle2D.Float(0, 0, 20, 20), first.getBounds2D());
+    }
+}
@@ -0,0 +1,34 @@
+package magick4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import java.awt.Font;
+import org.junit.Test;
+
+public class TypeMetricsCacheTest {
+
+    @Test
+    public void changingReturnedMetricsLeavesTheCacheAlone() {
+        Font font = new Font("SansSerif", Font.PLAIN, 12);
+        TypeMetrics first = TypeMetricsCache.getTypeMetrics(font, "copy on read");
+        double width = first.getWidth();
+        first.setWidth(-1);
+        first.compose(first.clone());
+
+        TypeMetrics second = TypeMetricsCache.getTypeMetrics(font, "copy on read");
+        assertNotSame(first, second);
+        assertEquals(width, second.getWidth(), 0);
+    }
+
+    @Test
+    public void metricsMatchTheFontMetrics() {
+        Font font = new Font("Serif", Font.BOLD, 20);
+        TypeMetrics expected = TypeMetrics.fromFontMetrics(TypeMetricsCache.getFontMetrics(font), "Measured");
+        TypeMetrics actual = TypeMetricsCache.getTypeMetrics(font, "Measured");
+        assertEquals(expected.getWidth(), actual.getWidth(), 0);
+        assertEquals(expected.getHeight(), actual.getHeight(), 0);
+        assertEquals(expected.getAscent(), actual.getAscent(), 0);
+        assertEquals(expected.getDescent(), actual.getDescent(), 0);
+    }
+}
@@ -8,6 +8,19 @@ module Magick
       @draw.annotate(img._image, width, height, x, y, text)
       self
     end
+
+    # Draws many labels onto img at once. Each label is an array
+    # [width, height, x, y, text] with an optional gravity at the end,
+    # otherwise the gravity of this Draw applies.
+    def annotate_all(img, labels)
+      annotations = java.util.ArrayList.new(labels.length)
+      labels.each do |width, height, x, y, text, gravity|
+        gravity = gravity._val if gravity
+        annotations.add(Magick4J.Annotation.new(width, height, x, y, gravity, parse_string(text)))
+      end
+      @draw.annotate(img._image, annotations)
+      self
+    end
     
     def clone
       b = Draw.new
@@ -18,7 +31,25 @@ module Magick
     end
 
     def draw(image)
-      @draw.clone.draw(image._image, Magick4J.CommandParser.parse(@primitives))
+      # Keep the compiled program until the primitives change.
+      @program ||= Magick4J.DrawProgram.compile(@primitives)
+      @draw.clone.draw(image._image, @program)
+      self
+    end
+
+    # Draws onto image with everything scaled by the factor, as for 2x or
+    # print renderings. The primitives are recorded once per drawing state
+    # and replayed at each scale, unless they can't be recorded.
+    def draw_scaled(image, scale)
+      @program ||= Magick4J.DrawProgram.compile(@primitives)
+      display_list = @program.getDisplayList(@draw)
+      if display_list
+        display_list.replay(image._image, scale)
+      else
+        draw = @draw.clone
+        draw.getSpaceTransformation.preConcatenate(java.awt.geom.AffineTransform.getScaleInstance(scale, scale))
+        draw.draw(image._image, @program)
+      end
       self
     end
 
@@ -27,6 +58,14 @@ module Magick
       self
     end
 
+    # Finds the largest pointsize from min_pointsize to max_pointsize at which
+    # text fits a width x height box, breaking lines between words if wrap is
+    # set. Returns [pointsize, lines], or the smallest size if nothing fits.
+    def fit_text(text, width, height, min_pointsize, max_pointsize, wrap=false)
+      fit = @draw.fitText(parse_string(text), width, height, min_pointsize, max_pointsize, wrap)
+      [fit.getPointSize, fit.getLines.to_a]
+    end
+
     def font_family= font_family
       @draw.font_family = font_family
       self
@@ -82,6 +121,7 @@ module Magick
       # TODO Concat in a string like they do, then use helper to parse later
       @primitives << "\n" unless @primitives.empty?
       @primitives << primitive.gsub(/[\r|\n]/, '')
+      @program = nil
       self
     end
 
@@ -115,6 +155,7 @@ module Magick
     
     def primitives=(value)
       @primitives = value.to_str
+      @program = nil
     end
     
     def _draw=(value)
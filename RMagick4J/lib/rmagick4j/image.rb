@@ -7,6 +7,16 @@ module Magick
       [Image.from_image(Magick4J.MagickImage.from_blob(blob.to_java_bytes), &add)]
     end
 
+    # Reads the image in the file, or makes a built-in one. The built-in
+    # "pattern:" images are bricks, checkerboard, circles, crosshatch,
+    # crosshatch45, gray0 to gray100 in steps of 5, hexagons, horizontal,
+    # left45, right45, vertical and verticalbricks, with the hs_bdiagonal,
+    # hs_cross, hs_diagcross, hs_fdiagonal, hs_horizontal and hs_vertical
+    # aliases. Their tiles are close to ImageMagick's, not copies. The other
+    # ImageMagick patterns, such as crosshatch30, fishscales, octagons,
+    # left30 and right30, horizontal2 and horizontal3, vertical2 and
+    # vertical3, horizontalsaw and verticalsaw, horizontalleftshingle and
+    # verticalleftshingle, and smallfishscales, aren't supported.
     def self.read(file, &add)
       info = Info.new(&add)
       image = Magick4J.ImageDatabase.createDefault(file.to_s, info._info) || Magick4J.MagickImage.new(java.io.File.new(file.to_s))
@@ -44,7 +54,9 @@ module Magick
     end
 
     def background_color
-      @image.getBackgroundColor
+      color = @image.getBackgroundColor
+      # The color may be shared, even with the color database, so hand out a copy.
+      Pixel.new(color.red, color.green, color.blue, color.opacity)
     end
     
     def background_color=(value)
@@ -277,10 +289,7 @@ module Magick
 
       def size= size
         size = Geometry.from_s(size) if size.is_a? String
-        geometry = Magick4J.Geometry.new
-        geometry.setWidth(size.width)
-        geometry.setHeight(size.height)
-        @info.setSize(geometry)
+        @info.setSize(Magick4J.Geometry.new(size.width, size.height))
       end
 
     end
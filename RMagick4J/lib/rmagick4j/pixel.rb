@@ -33,7 +33,8 @@ module Magick
     def self.from_color(color_name)
       result = Magick4J::ColorDatabase.lookUp(color_name)
       raise ArgumentError, "invalid color name: #{color_name}" if result.nil?
-      result
+      # Named colors are shared, so hand out a copy that can be changed.
+      Pixel.new(result.red, result.green, result.blue, result.opacity)
     end
     
     def self.from_HSL(array)
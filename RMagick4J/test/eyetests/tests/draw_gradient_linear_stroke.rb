@@ -0,0 +1,23 @@
+require File.join(File.dirname(__FILE__), 'new_image.rb')
+
+include Magick
+
+gc = Draw.new
+
+gc.push('defs')
+gc.push('gradient', 'ramp', 'linear', '25,25', '275,275')
+gc.primitive("stop-color '#000000' 0")
+gc.primitive("stop-color '#ff8844' 1")
+gc.pop('gradient')
+gc.pop('defs')
+
+gc.fill('none')
+gc.stroke('ramp')
+gc.stroke_width(20)
+gc.circle(150, 150, 150, 40)
+gc.line(25, 275, 275, 25)
+
+img = Image.new(300, 300, HatchFill.new('white', 'LightCyan2', 8))
+gc.draw(img)
+
+img.write('draw_gradient_linear_stroke.jpg')
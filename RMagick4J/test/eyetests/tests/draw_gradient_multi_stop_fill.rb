@@ -0,0 +1,24 @@
+require File.join(File.dirname(__FILE__), 'new_image.rb')
+
+include Magick
+
+gc = Draw.new
+
+gc.push('defs')
+gc.push('gradient', 'ramp', 'linear', '25,150', '275,150')
+gc.primitive("stop-color red 0")
+gc.primitive("stop-color yellow 0.25")
+gc.primitive("stop-color green 0.5")
+gc.primitive("stop-color blue 0.75")
+gc.primitive("stop-color purple 1")
+gc.pop('gradient')
+gc.pop('defs')
+
+gc.stroke('none')
+gc.fill('ramp')
+gc.rectangle(25, 25, 275, 275)
+
+img = Image.new(300, 300, HatchFill.new('white', 'LightCyan2', 8))
+gc.draw(img)
+
+img.write('draw_gradient_multi_stop_fill.jpg')
@@ -0,0 +1,23 @@
+require File.join(File.dirname(__FILE__), 'new_image.rb')
+
+include Magick
+
+names = %w(bricks checkerboard circles crosshatch crosshatch45 hexagons
+  horizontal vertical left45 right45 verticalbricks
+  hs_cross hs_diagcross hs_horizontal hs_vertical hs_bdiagonal hs_fdiagonal)
+names += (0..100).step(5).map { |percent| "gray#{percent}" }
+
+img = Image.new(300, 350) { self.background_color = 'white' }
+
+label = Draw.new
+label.pointsize = 9
+
+names.each_with_index do |name, i|
+  x = (i % 6) * 50
+  y = (i / 6) * 50
+  tile = Image.read("pattern:#{name}") { self.size = '46x34' }.first
+  img = img.composite(tile, x + 2, y + 2, OverCompositeOp)
+  label.annotate(img, 50, 12, x, y + 37, name)
+end
+
+img.write('pattern_builtin_names.jpg')
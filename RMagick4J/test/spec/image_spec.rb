@@ -25,4 +25,10 @@ describe Image do
   it "should return a one-item array after reading an image" do
     @image.should have(1).images
   end
+
+  it "should hand out a background color that can be changed" do
+    image = Image.new(10, 10) { self.background_color = 'red' }
+    image.background_color.opacity = QuantumRange
+    image.background_color.opacity.should == 0
+  end
 end
@@ -0,0 +1,13 @@
+require "rubygems"
+require 'spec/story'
+
+require File.join(File.dirname(__FILE__), '..', '..', '..','lib','RMagick')
+
+include Magick
+
+require File.join(File.dirname(__FILE__), 'color_parsing_steps.rb')
+
+
+with_steps_for(:color) do
+  run File.join(File.dirname(__FILE__), 'color_parsing_story.rb')
+end
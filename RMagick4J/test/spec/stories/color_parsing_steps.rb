@@ -0,0 +1,17 @@
+steps_for(:color) do
+  Given("the color $name") do |name|
+    @name = name
+  end
+
+  When("parsing the color") do
+    @color = Magick4J::ColorDatabase.queryDefault(@name)
+  end
+
+  Then("the channels should be $red $green $blue $opacity") do |red, green, blue, opacity|
+    [@color.red, @color.green, @color.blue, @color.opacity].should == [red.to_i, green.to_i, blue.to_i, opacity.to_i]
+  end
+
+  Then("there should be no color") do
+    @color.should be_nil
+  end
+end
@@ -0,0 +1,64 @@
+Story: parsing colors
+  As a developer
+  I want to give colors in hex, rgb() or hsl() notation
+  So that I can use the colors of my stylesheets.
+  
+  Scenario: a short hex color with alpha
+    Given the color #f008
+    When parsing the color
+    Then the channels should be 255 0 0 119
+    
+  Scenario: a hex color with alpha
+    Given the color #00ff0080
+    When parsing the color
+    Then the channels should be 0 255 0 127
+    
+  Scenario: an rgb color in percentages
+    Given the color rgb(100%, 50%, 0%)
+    When parsing the color
+    Then the channels should be 255 128 0 0
+    
+  Scenario: an rgba color in percentages
+    Given the color rgba(0%, 0%, 100%, 50%)
+    When parsing the color
+    Then the channels should be 0 0 255 127
+    
+  Scenario: an hsl color
+    Given the color hsl(120, 100%, 50%)
+    When parsing the color
+    Then the channels should be 0 255 0 0
+    
+  Scenario: an hsla color
+    Given the color hsla(240, 100%, 50%, 0.25)
+    When parsing the color
+    Then the channels should be 0 0 255 191
+    
+  Scenario: None is transparent
+    Given the color None
+    When parsing the color
+    Then the channels should be 0 0 0 255
+    
+  Scenario: rgb with letters instead of numbers
+    Given the color rgb(a, b, c)
+    When parsing the color
+    Then there should be no color
+    
+  Scenario: hsl with a letter for the hue
+    Given the color hsl(x, 50%, 50%)
+    When parsing the color
+    Then there should be no color
+    
+  Scenario: hex with letters that aren't hex digits
+    Given the color #zz0000
+    When parsing the color
+    Then there should be no color
+    
+  Scenario: rgb with too few numbers
+    Given the color rgb(1, 2)
+    When parsing the color
+    Then there should be no color
+    
+  Scenario: hex with five digits
+    Given the color #12345
+    When parsing the color
+    Then there should be no color
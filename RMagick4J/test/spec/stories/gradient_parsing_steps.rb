@@ -0,0 +1,25 @@
+steps_for(:gradient) do
+  Given("a linear gradient from $start to $stop") do |start, stop|
+    @script = "push gradient ramp linear 0,0 100,0\n" +
+              "stop-color #{start} 0\n" +
+              "stop-color #{stop} 1\n" +
+              "pop gradient\n"
+  end
+
+  When("parsing the gradient") do
+    begin
+      @error = nil
+      Magick4J::CommandParser.parse(@script)
+    rescue NativeException => e
+      @error = e.message
+    end
+  end
+
+  Then("the gradient should parse") do
+    @error.should be_nil
+  end
+
+  Then("the parse should fail with $message") do |message|
+    @error.should include(message)
+  end
+end
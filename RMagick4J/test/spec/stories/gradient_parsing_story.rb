@@ -0,0 +1,14 @@
+Story: parsing gradients
+  As a developer
+  I want to define gradients in MVG
+  So that I can fill and stroke shapes with them.
+  
+  Scenario: stops with named colors
+    Given a linear gradient from red to blue
+    When parsing the gradient
+    Then the gradient should parse
+    
+  Scenario: a stop with an unknown color
+    Given a linear gradient from red to nocolor
+    When parsing the gradient
+    Then the parse should fail with unknown color: nocolor